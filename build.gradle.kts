@@ -17,9 +17,13 @@ repositories {
 dependencies {
     intellijPlatform {
         create("IC", "2025.1")
+        bundledPlugin("org.jetbrains.idea.maven")
         testFramework(org.jetbrains.intellij.platform.gradle.TestFrameworkType.Platform)
+        testFramework(org.jetbrains.intellij.platform.gradle.TestFrameworkType.JUnit5)
     }
     testImplementation(libs.junit.jupiter)
+    // The platform test framework still loads JUnit 4 classes
+    testImplementation(libs.junit4)
     testRuntimeOnly("org.junit.platform:junit-platform-launcher")
     implementation(libs.guava)
     implementation("io.github.ollama4j:ollama4j:1.0.100")
@@ -45,6 +49,9 @@ tasks {
         sourceCompatibility = "21"
         targetCompatibility = "21"
     }
+    test {
+        useJUnitPlatform()
+    }
 }
 
 tasks.instrumentCode {
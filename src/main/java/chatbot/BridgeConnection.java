@@ -0,0 +1,256 @@
+package chatbot;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import org.slf4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One long-lived connection to the Python server. Requests carry an "id" that the server echoes back, so several
+ * requests can be in flight at once: writes are serialized, and a reader thread hands each response to the
+ * future registered under its id. When the connection breaks, all pending requests fail and it reports itself
+ * unhealthy so the pool replaces it.
+ *
+ * Right after connecting, the client offers binary framing in a newline-delimited hello. If the server accepts,
+ * every message is a frame: 4-byte big-endian payload length, a flags byte (bit 0: zlib-compressed) and the
+ * UTF-8 JSON payload, so large payloads are read into one sized buffer and newlines inside them are harmless.
+ * A server that does not understand the hello answers with an error, and the connection keeps using
+ * newline-delimited JSON.
+ *
+ * A streaming request may be answered by any number of {"id", "chunk"} messages before its final response; the
+ * chunks go to the consumer registered with the request, on the reader thread.
+ */
+final class BridgeConnection implements AutoCloseable
+{
+    private static final Logger LOG = com.example.my_plugin.LogInitializer.getLogger(BridgeConnection.class);
+
+    static final String FRAMING = "binary-v1";
+    private static final int FLAG_ZLIB = 0x01;
+    private static final int MAX_FRAME = 256 * 1024 * 1024;
+    static final int COMPRESS_THRESHOLD = Integer.getInteger("licenseTool.bridge.compressThreshold", 64 * 1024);
+
+    private final Socket socket;
+    private final DataOutputStream out;
+    private final DataInputStream in;
+    private final boolean binary;
+    private final boolean zlib;
+    private final Map<Long, Pending> pending = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    BridgeConnection(String host, int port, int connectTimeoutMillis) throws IOException {
+        socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+            socket.connect(new InetSocketAddress(host, port), connectTimeoutMillis);
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+
+            // Handshake, bounded by the connect timeout
+            socket.setSoTimeout(connectTimeoutMillis);
+            writeLine("{\"hello\":{\"framing\":[\"" + FRAMING + "\"],\"compression\":[\"zlib\"]}}");
+            JsonObject reply = JsonParser.parseString(readLine()).getAsJsonObject();
+            socket.setSoTimeout(0);
+            JsonObject hello = reply.has("hello") && reply.get("hello").isJsonObject() ? reply.getAsJsonObject("hello") : null;
+            binary = hello != null && hello.has("framing") && FRAMING.equals(hello.get("framing").getAsString());
+            zlib = binary && hello.has("compression") && hello.getAsJsonArray("compression").contains(new JsonPrimitive("zlib"));
+            LOG.info("Connected to the Python server using {} framing", binary ? FRAMING : "newline");
+        } catch (IOException | RuntimeException e) {
+            socket.close();
+            throw e instanceof IOException io ? io : new IOException("Handshake with the Python server failed", e);
+        }
+        Thread.ofPlatform().daemon().name("license-tool-bridge-reader-" + socket.getLocalPort()).start(this::readLoop);
+    }
+
+    private record Pending(CompletableFuture<JsonObject> response, Consumer<String> onChunk) {}
+
+    /**
+     * Sends a request that already carries its "id"; the returned future completes with the matching response.
+     * @param onChunk receives the partial output of a streaming request; runs on the reader thread, so it must
+     *                not block. May be null.
+     * @throws IOException if the request could not be written, in which case it was not delivered
+     */
+    CompletableFuture<JsonObject> send(long id, JsonObject request, Consumer<String> onChunk) throws IOException {
+        CompletableFuture<JsonObject> response = new CompletableFuture<>();
+        pending.put(id, new Pending(response, onChunk));
+        try {
+            byte[] payload = request.toString().getBytes(StandardCharsets.UTF_8);
+            synchronized (out) {
+                if (closed) throw new IOException("Connection closed");
+                if (binary) writeFrame(payload);
+                else writeLine(payload);
+            }
+        } catch (IOException e) {
+            pending.remove(id);
+            close();
+            throw e;
+        }
+        return response;
+    }
+
+    /**
+     * Forgets a request whose caller gave up on it; a late response is dropped.
+     */
+    void abandon(long id) {
+        pending.remove(id);
+    }
+
+    boolean isHealthy() {
+        return !closed && socket.isConnected() && !socket.isClosed();
+    }
+
+    int inFlight() {
+        return pending.size();
+    }
+
+    private void writeFrame(byte[] payload) throws IOException {
+        int flags = 0;
+        if (zlib && payload.length > COMPRESS_THRESHOLD) {
+            payload = deflate(payload);
+            flags |= FLAG_ZLIB;
+        }
+        out.writeInt(payload.length);
+        out.writeByte(flags);
+        out.write(payload);
+        out.flush();
+    }
+
+    private void writeLine(String line) throws IOException {
+        writeLine(line.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void writeLine(byte[] line) throws IOException {
+        out.write(line);
+        out.write('\n');
+        out.flush();
+    }
+
+    // Next message, or null at end of stream
+    private String readMessage() throws IOException {
+        if (!binary) return readLine();
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        int flags = in.readUnsignedByte();
+        if (length < 0 || length > MAX_FRAME) throw new IOException("Invalid frame length " + length);
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        if ((flags & FLAG_ZLIB) != 0) payload = inflate(payload, MAX_FRAME);
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+
+    // Reads up to the next newline and decodes the whole line at once, so multi-byte characters are never split
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) return line.size() == 0 ? null : line.toString(StandardCharsets.UTF_8);
+            line.write(b);
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 4 + 64);
+            byte[] buffer = new byte[64 * 1024];
+            while (!deflater.finished()) {
+                compressed.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return compressed.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    // The limit applies to the inflated size, so a small frame cannot expand into an unbounded buffer
+    static byte[] inflate(byte[] data, int maxLength) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream inflated = new ByteArrayOutputStream((int) Math.min(data.length * 4L, maxLength));
+            byte[] buffer = new byte[64 * 1024];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated compressed frame");
+                }
+                if (n > maxLength - inflated.size()) {
+                    throw new IOException("Compressed frame inflates to more than " + maxLength + " bytes");
+                }
+                inflated.write(buffer, 0, n);
+            }
+            return inflated.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException("Invalid compressed frame", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private void readLoop() {
+        try {
+            String line;
+            while ((line = readMessage()) != null) {
+                JsonObject response = JsonParser.parseString(line).getAsJsonObject();
+                JsonElement id = response.remove("id");
+                boolean chunk = response.has("chunk");
+                Pending request = id == null || id.isJsonNull() ? null
+                        : chunk ? pending.get(id.getAsLong()) : pending.remove(id.getAsLong());
+                if (request == null) {
+                    if (!chunk) LOG.warn("Dropping response without a waiting request: {}", line);
+                } else if (!chunk) {
+                    request.response.complete(response);
+                } else if (request.onChunk != null) {
+                    try {
+                        request.onChunk.accept(response.get("chunk").getAsString());
+                    } catch (RuntimeException e) {
+                        LOG.warn("Chunk consumer failed: {}", e.toString());
+                    }
+                }
+            }
+        } catch (Exception e) {
+            if (!closed) LOG.warn("Python server connection failed: {}", e.toString());
+        } finally {
+            close();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+        IOException broken = new IOException("Connection to the Python server closed");
+        pending.values().forEach(p -> p.response.completeExceptionally(broken));
+        pending.clear();
+    }
+}
@@ -0,0 +1,127 @@
+package chatbot;
+
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed number of {@link BridgeConnection}s to one server, shared by all callers. A caller gets an idle healthy
+ * connection if there is one; otherwise an empty or broken slot is connected, or the least loaded connection is
+ * shared. Connecting (and the hello handshake) happens outside the pool lock with the slot reserved, so a slow or
+ * unreachable server only holds up the callers that actually wait for the new connection.
+ */
+final class BridgePool
+{
+    private static final Logger LOG = com.example.my_plugin.LogInitializer.getLogger(BridgePool.class);
+
+    private final String host;
+    private final int port;
+    private final int connectTimeoutMillis;
+    private final BridgeConnection[] slots;
+    // Slots a caller is connecting outside the lock
+    private final boolean[] connecting;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotConnected = lock.newCondition();
+
+    BridgePool(String host, int port, int size, int connectTimeoutMillis) {
+        this.host = host;
+        this.port = port;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.slots = new BridgeConnection[size];
+        this.connecting = new boolean[size];
+    }
+
+    /**
+     * @throws IOException if no connection could be made and there is no healthy one to share
+     */
+    BridgeConnection borrow() throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(connectTimeoutMillis);
+        int slot;
+        lock.lock();
+        try {
+            while (true) {
+                BridgeConnection best = leastLoaded();
+                slot = freeSlot();
+                if (best != null && (best.inFlight() == 0 || slot < 0)) return best;
+                if (slot >= 0) break;
+                // Every slot is being connected by another caller
+                long left = deadline - System.nanoTime();
+                if (left <= 0) throw new IOException("Timed out waiting for a connection to the Python server");
+                try {
+                    slotConnected.awaitNanos(left);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for a connection to the Python server");
+                }
+            }
+            connecting[slot] = true;
+            if (slots[slot] != null) {
+                slots[slot].close();
+                slots[slot] = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        BridgeConnection fresh = null;
+        try {
+            fresh = new BridgeConnection(host, port, connectTimeoutMillis);
+            return fresh;
+        } catch (IOException e) {
+            lock.lock();
+            try {
+                BridgeConnection shared = leastLoaded();
+                if (shared == null) throw e;
+                LOG.info("Could not open another connection to the Python server ({}), sharing an existing one", e.getMessage());
+                return shared;
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            lock.lock();
+            try {
+                connecting[slot] = false;
+                if (fresh != null) slots[slot] = fresh;
+                slotConnected.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Closes all connections; they are reopened by later calls to {@link #borrow()}.
+     */
+    void close() {
+        lock.lock();
+        try {
+            for (int i = 0; i < slots.length; i++) {
+                if (slots[i] != null) slots[i].close();
+                slots[i] = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Healthy connection with the fewest requests in flight, or null; called with the lock held
+    private BridgeConnection leastLoaded() {
+        BridgeConnection best = null;
+        for (BridgeConnection c : slots) {
+            if (c != null && c.isHealthy() && (best == null || c.inFlight() < best.inFlight())) best = c;
+        }
+        return best;
+    }
+
+    // Empty or broken slot nobody is connecting, or -1; called with the lock held
+    private int freeSlot() {
+        for (int i = 0; i < slots.length; i++) {
+            if (!connecting[i] && (slots[i] == null || !slots[i].isHealthy())) return i;
+        }
+        return -1;
+    }
+}
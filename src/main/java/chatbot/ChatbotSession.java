@@ -1,5 +1,14 @@
 package chatbot;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 /**
  * Represents a "session" with the chatbot - created when the chatbot
@@ -7,6 +16,9 @@ package chatbot;
  */
 public abstract class ChatbotSession
 {
+    // Requests block on the Python bridge; on virtual threads that costs no platform (IDE pool) thread
+    private static final ExecutorService ASYNC_EXECUTOR =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("chatbot-prompt-", 0).factory());
 
     /**
      *
@@ -16,8 +28,69 @@ public abstract class ChatbotSession
      */
     public abstract String submitPrompt(String prompt) throws Exception;
 
+    /**
+     * Like {@link #submitPrompt(String)}, but hands the response to onChunk piece by piece while it is being
+     * generated. Sessions that cannot stream deliver the whole response as a single chunk.
+     * @param onChunk Receives the partial response; may be called from a background thread
+     * @return The complete response
+     * @throws Exception
+     */
+    public String submitPromptStreaming(String prompt, Consumer<String> onChunk) throws Exception {
+        String response = submitPrompt(prompt);
+        if (onChunk != null) onChunk.accept(response);
+        return response;
+    }
+
+    /**
+     * Answers several independent prompts. Sessions that cannot batch answer them one after the other, as
+     * regular prompts.
+     * @param prompts Prompts that do not depend on each other's answers
+     * @return The answers, in prompt order
+     * @throws Exception
+     */
+    public List<String> submitPrompts(List<String> prompts) throws Exception {
+        List<String> answers = new ArrayList<>(prompts.size());
+        for (String prompt : prompts) answers.add(submitPrompt(prompt));
+        return answers;
+    }
+
+    /**
+     * Non-blocking variant of {@link #submitPrompt(String)}.
+     * @return Completes with the model's response. Cancelling it, or letting it time out (e.g. with
+     * {@link CompletableFuture#orTimeout}), abandons the request; the exchange is then not added to the history.
+     */
+    public CompletableFuture<String> submitPromptAsync(String prompt) {
+        return submitPromptAsync(prompt, null);
+    }
+
+    /**
+     * Non-blocking variant of {@link #submitPromptStreaming(String, Consumer)}; see {@link #submitPromptAsync(String)}.
+     */
+    public CompletableFuture<String> submitPromptAsync(String prompt, Consumer<String> onChunk) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        Future<?> request = ASYNC_EXECUTOR.submit(() -> {
+            try {
+                result.complete(onChunk == null ? submitPrompt(prompt) : submitPromptStreaming(prompt, onChunk));
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        // The interrupt makes the bridge abandon the request
+        result.whenComplete((response, t) -> {
+            if (t instanceof CancellationException || t instanceof TimeoutException) request.cancel(true);
+        });
+        return result;
+    }
+
     public abstract void clearHistory();
 
+    /**
+     * Releases resources held for this session outside the JVM, e.g. server-side history. The session stays
+     * usable and re-acquires them if it is used again.
+     */
+    public void close() {
+    }
+
     public abstract void addToHistory(String role, String content);
 
 }
@@ -1,101 +1,312 @@
 package chatbot;
 
 import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import org.slf4j.Logger;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Chat session backed by the Python server. The conversation is mirrored in a server-side session, so each
+ * prompt only carries the history entries added since the previous request (the Java-side window stays the
+ * source of truth). When the server lost the session, e.g. after a restart, or the window was compacted, the
+ * session is reopened by replaying the window.
+ */
 public class ChatbotSessionLlamaPython extends ChatbotSession
 {
+    private static final Logger LOG = com.example.my_plugin.LogInitializer.getLogger(ChatbotSessionLlamaPython.class);
+
+    /**
+     * Sends a request to the Python server; onChunk is null unless the request should stream.
+     * @return the response, or an empty object if there was none
+     */
+    interface Bridge
+    {
+        JsonObject call(JsonObject request, Consumer<String> onChunk);
+    }
+
+    private static final Bridge PYTHON_SERVER = (request, onChunk) ->
+            onChunk == null ? JavaSocketClient.callPython(request) : JavaSocketClient.callPythonStreaming(request, onChunk);
+
     private String host;
     private String model;
-    private JsonArray history;
+    // Bounded by a token budget; older turns are condensed into a summary
+    private HistoryWindow history;
+
+    // Server-side mirror of the history: its id, the window epoch it was opened at, the number of entries the
+    // server is known to have, and the entries added since then
+    private String sessionId;
+    private int sessionEpoch;
+    private int syncedCount;
+    private JsonArray pendingEntries = new JsonArray();
+    // Set when the server has no session support, in which case the full history is sent every time
+    private boolean sessionsUnsupported;
+    // Guards the session state; a lock rather than a monitor because opening a session is a blocking bridge
+    // call, which would pin the carrier of a virtual thread (see submitPromptAsync)
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Bridge bridge;
 
     public ChatbotSessionLlamaPython(String host, String model){
-        this.host = host;
-        this.model = model;
-        this.history = new JsonArray();
+        this(host, model, new HistoryWindow(), PYTHON_SERVER);
     }
 
     //TODO this is currently implemented as a generic class that can host any model, but ideally we should have different implementations for different models
     public ChatbotSessionLlamaPython(String host, String model, String systemPrompt){
+        this(host, model, new HistoryWindow(), PYTHON_SERVER);
+        addToHistory("system", systemPrompt);
+    }
+
+    ChatbotSessionLlamaPython(String host, String model, HistoryWindow history, Bridge bridge){
         this.host = host;
         this.model = model;
-        this.history = new JsonArray();
-        addToHistory("system", systemPrompt);
+        this.history = history;
+        this.bridge = bridge;
     }
 
     public String submitPrompt(String prompt) throws Exception {
-        // Create JSON request
-        JsonObject requestJson = new JsonObject();
-        requestJson.addProperty("function", "promptModel");
-        JsonArray arguments = new JsonArray();
-        arguments.add(this.host);
-        arguments.add(this.model);
-        arguments.add(prompt);
-        arguments.add(this.history);
-        requestJson.add("args", arguments);
+        return submitPromptStreaming(prompt, null);
+    }
 
-        // Call Python function
-        JsonObject responseJson = JavaSocketClient.callPython(requestJson);
+    /**
+     * Streams the response through the server; the returned string is the complete response, which is also
+     * what gets recorded in the history.
+     */
+    @Override
+    public String submitPromptStreaming(String prompt, Consumer<String> onChunk) throws Exception {
+        JsonObject responseJson = prompt(prompt, onChunk);
+        // An interrupted request was abandoned, so there is no answer to record
+        if (Thread.interrupted()) throw new InterruptedException("Prompt cancelled");
+        String result = resultOf(responseJson);
 
-        // Get response
+        // Add to history; these entries reach the server with the next request
+        addToHistory("user", prompt);
+        addToHistory("assistant", result);
+
+        // Return result
+        return result;
+    }
+
+    /**
+     * Sends a single prompt on top of the current history (typically just the system prompt) without recording
+     * the exchange, so independent helper requests stay small and can safely run concurrently.
+     */
+    public String submitStatelessPrompt(String prompt) throws Exception {
+        return resultOf(prompt(prompt, null));
+    }
+
+    /**
+     * Answers independent prompts in a single bridge request; the server dispatches them concurrently. Like
+     * {@link #submitStatelessPrompt}, each prompt sees the current history and none of them is recorded.
+     * @return the answers in prompt order, an empty string where a prompt failed
+     */
+    @Override
+    public List<String> submitPrompts(List<String> prompts) throws Exception {
+        if (prompts.isEmpty()) return List.of();
+        JsonArray batch = new JsonArray();
+        prompts.forEach(batch::add);
+        JsonObject responseJson = prompt(batch, true, null);
+        if (Thread.interrupted()) throw new InterruptedException("Prompts cancelled");
+        if (!responseJson.has("result") || !responseJson.get("result").isJsonArray()) {
+            if (responseJson.has("error")) {
+                // A server without the batch functions; ask one by one
+                LOG.info("Batch prompts not supported ({}), sending {} prompts individually", responseJson.get("error"), prompts.size());
+                List<String> answers = new ArrayList<>(prompts.size());
+                for (String prompt : prompts) answers.add(submitStatelessPrompt(prompt));
+                return answers;
+            }
+            throw new IOException("No answer from the Python server for a batch of " + prompts.size() + " prompts");
+        }
+        JsonArray results = responseJson.getAsJsonArray("result");
+        List<String> answers = new ArrayList<>(prompts.size());
+        for (int i = 0; i < prompts.size(); i++) {
+            JsonElement answer = i < results.size() ? results.get(i) : null;
+            answers.add(answer == null || answer.isJsonNull() ? "" : answer.getAsString());
+        }
+        return answers;
+    }
+
+    private static String resultOf(JsonObject responseJson) {
         // String result = responseJson.get("result").toString();
         String result = "";
         if (responseJson.has("result") && !responseJson.get("result").isJsonNull()) {
             // Use getAsString() to avoid JSON quoting/escaped \n sequences
             result = responseJson.get("result").getAsString();
         }
-
-        // Add to history
-        addToHistory("user", prompt);
-        addToHistory("assistant", result);
-
-        // Return result
         return result;
     }
 
-    //TODO ideally we don't need this, but the async nature of it is breaking things in some places
-    public String submitPromptBlocking(String prompt) throws Exception {
-        // Create JSON request
-        JsonObject requestJson = new JsonObject();
-        requestJson.addProperty("function", "promptModel");
+    private JsonObject prompt(String prompt, Consumer<String> onChunk) {
+        return prompt(new JsonPrimitive(prompt), false, onChunk);
+    }
+
+    // A single prompt, or with batch an array of independent prompts
+    private JsonObject prompt(JsonElement prompt, boolean batch, Consumer<String> onChunk) {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            Delta delta = takeDelta();
+            if (delta == null) break; // no session support, fall through to the stateless protocol
+
+            JsonArray arguments = new JsonArray();
+            arguments.add(delta.sessionId);
+            arguments.add(this.host);
+            arguments.add(this.model);
+            arguments.add(prompt);
+            arguments.add(delta.base);
+            arguments.add(delta.entries);
+            JsonObject responseJson = call(request(batch ? "promptSessionBatch" : "promptSession", arguments), onChunk);
+
+            if (responseJson.has("error") && "unknown_session".equals(responseJson.get("error").getAsString())) {
+                LOG.info("Python server lost session {}, replaying the history", delta.sessionId);
+                invalidateSession(delta.sessionId);
+                continue;
+            }
+            if (responseJson.has("result")) {
+                deltaDelivered(delta);
+            }
+            return responseJson;
+        }
+
         JsonArray arguments = new JsonArray();
         arguments.add(this.host);
         arguments.add(this.model);
         arguments.add(prompt);
-        arguments.add(this.history);
-        requestJson.add("args", arguments);
+        arguments.add(this.history.toJsonArray());
+        return call(request(batch ? "promptModelBatch" : "promptModel", arguments), onChunk);
+    }
 
-        // Call Python function
-        JsonObject responseJson = JavaSocketClient.callPython(requestJson);
+    private JsonObject call(JsonObject request, Consumer<String> onChunk) {
+        return bridge.call(request, onChunk);
+    }
 
-        // Get response
-        // String result = responseJson.get("result").toString();
-        String result = "";
-        if (responseJson.has("result") && !responseJson.get("result").isJsonNull()) {
-            // Use getAsString() to avoid JSON quoting/escaped \n sequences
-            result = responseJson.get("result").getAsString();
+    private record Delta(String sessionId, int base, JsonArray entries, int count) {}
+
+    // The entries the server does not have yet, (re)opening the session first when needed
+    private Delta takeDelta() {
+        String previous = null;
+        lock.lock();
+        try {
+            if (sessionsUnsupported) return null;
+            if (sessionId == null || sessionEpoch != history.getEpoch()) {
+                previous = sessionId;
+                if (!openSession()) {
+                    previous = null;
+                    return null;
+                }
+            }
+            return new Delta(sessionId, syncedCount, pendingEntries.deepCopy(), pendingEntries.size());
+        } finally {
+            lock.unlock();
+            // The replaced session is not needed by anyone waiting for the lock
+            if (previous != null) closeSession(previous);
         }
+    }
 
-        // Add to history
-        addToHistory("user", prompt);
-        addToHistory("assistant", result);
+    private void deltaDelivered(Delta delta) {
+        lock.lock();
+        try {
+            if (!delta.sessionId.equals(sessionId) || syncedCount != delta.base) return;
+            syncedCount += delta.count;
+            JsonArray rest = new JsonArray();
+            for (int i = delta.count; i < pendingEntries.size(); i++) rest.add(pendingEntries.get(i));
+            pendingEntries = rest;
+        } finally {
+            lock.unlock();
+        }
+    }
 
-        // Return result
-        return result;
+    private void invalidateSession(String staleId) {
+        lock.lock();
+        try {
+            if (staleId.equals(sessionId)) sessionId = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Replays the whole window into a new server-side session; called with the lock held, so concurrent prompts
+    // wait for this session instead of each opening their own
+    private boolean openSession() {
+        JsonArray snapshot = history.toJsonArray();
+        JsonArray arguments = new JsonArray();
+        arguments.add(snapshot);
+        JsonObject responseJson = call(request("openSession", arguments), null);
+        if (!responseJson.has("result") || responseJson.get("result").isJsonNull()) {
+            if (responseJson.has("error")) {
+                LOG.info("Python server has no session support ({}), sending full history", responseJson.get("error"));
+                sessionsUnsupported = true;
+            }
+            return false;
+        }
+        sessionId = responseJson.get("result").getAsString();
+        sessionEpoch = history.getEpoch();
+        syncedCount = snapshot.size();
+        pendingEntries = new JsonArray();
+        return true;
+    }
+
+    private void closeSession(String id) {
+        JsonArray arguments = new JsonArray();
+        arguments.add(id);
+        call(request("closeSession", arguments), null);
+    }
+
+    private static JsonObject request(String function, JsonArray arguments) {
+        JsonObject requestJson = new JsonObject();
+        requestJson.addProperty("function", function);
+        requestJson.add("args", arguments);
+        return requestJson;
     }
 
     public void clearHistory(){
-        this.history = new JsonArray();
+        String previous;
+        lock.lock();
+        try {
+            this.history = new HistoryWindow();
+            previous = sessionId;
+            sessionId = null;
+            pendingEntries = new JsonArray();
+        } finally {
+            lock.unlock();
+        }
+        if (previous != null) closeSession(previous);
+    }
+
+    @Override
+    public void close() {
+        String previous;
+        lock.lock();
+        try {
+            previous = sessionId;
+            sessionId = null;
+        } finally {
+            lock.unlock();
+        }
+        if (previous != null) closeSession(previous);
     }
 
     public JsonArray getHistory(){
-        return this.history;
+        return this.history.toJsonArray();
     }
 
     public void addToHistory(String role, String content){
-        JsonObject iteration = new JsonObject();
-        iteration.addProperty("role", role);
-        iteration.addProperty("content", content);
-        this.history.add(iteration);
+        lock.lock();
+        try {
+            int epoch = history.getEpoch();
+            this.history.add(role, content);
+            // After a compaction the session is replayed anyway, so there is no delta to keep
+            if (history.getEpoch() == epoch) {
+                JsonObject entry = new JsonObject();
+                entry.addProperty("role", role);
+                entry.addProperty("content", content == null ? "" : content);
+                pendingEntries.add(entry);
+            }
+        } finally {
+            lock.unlock();
+        }
     }
 }
@@ -0,0 +1,166 @@
+package chatbot;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.slf4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.regex.Pattern;
+
+/**
+ * Conversation history kept within a token budget ({@code licenseTool.chat.tokenBudget}, default 12000,
+ * estimated as characters / 4). The system prompt is pinned, the most recent turns are kept verbatim, and
+ * older turns are folded into a rolling extractive summary, so the history sent with a prompt stays bounded
+ * however long the session runs.
+ *
+ * Compaction only starts when the budget is exceeded and then frees room down to three quarters of it, so it
+ * happens every few turns rather than on every one. Each compaction bumps {@link #getEpoch()}.
+ */
+final class HistoryWindow
+{
+    private static final Logger LOG = com.example.my_plugin.LogInitializer.getLogger(HistoryWindow.class);
+
+    static final int DEFAULT_TOKEN_BUDGET = Integer.getInteger("licenseTool.chat.tokenBudget", 12_000);
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+    // Turns that are always kept verbatim (the last question and answer), truncated if they alone exceed the budget
+    private static final int MIN_VERBATIM_TURNS = 2;
+    private static final int SUMMARY_LINE_CHARS = 240;
+    private static final String SUMMARY_HEADER = "Summary of the earlier conversation (older turns condensed):";
+    private static final Pattern JSON_BLOB = Pattern.compile("[\\[{][^\\[\\]{}]{120,}[\\]}]");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final int tokenBudget;
+    private JsonObject systemMessage;
+    private final Deque<JsonObject> turns = new ArrayDeque<>();
+    private final Deque<String> summaryLines = new ArrayDeque<>();
+    private int turnTokens;
+    private int summaryTokens;
+    private int epoch;
+
+    public HistoryWindow() {
+        this(DEFAULT_TOKEN_BUDGET);
+    }
+
+    public HistoryWindow(int tokenBudget) {
+        this.tokenBudget = Math.max(1_000, tokenBudget);
+    }
+
+    public static int estimateTokens(String text) {
+        return text == null ? 0 : (text.length() + 3) / 4;
+    }
+
+    /**
+     * Adds a message. The first system message is pinned; everything else is a turn.
+     */
+    public synchronized void add(String role, String content) {
+        JsonObject message = message(role, content);
+        if ("system".equals(role) && systemMessage == null && turns.isEmpty()) {
+            systemMessage = message;
+        } else {
+            turns.addLast(message);
+            turnTokens += tokens(message);
+        }
+        if (totalTokens() > tokenBudget) {
+            compact();
+        }
+    }
+
+    public synchronized void clear() {
+        systemMessage = null;
+        turns.clear();
+        summaryLines.clear();
+        turnTokens = 0;
+        summaryTokens = 0;
+        epoch++;
+    }
+
+    /**
+     * Number of compactions (and clears) so far; messages already sent before the current epoch may have been
+     * folded into the summary since.
+     */
+    public synchronized int getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * The messages to send: pinned system prompt, summary of older turns (if any), then the recent turns.
+     */
+    public synchronized JsonArray toJsonArray() {
+        JsonArray out = new JsonArray();
+        if (systemMessage != null) out.add(systemMessage.deepCopy());
+        if (!summaryLines.isEmpty()) out.add(message("system", summaryText()));
+        for (JsonObject turn : turns) out.add(turn.deepCopy());
+        return out;
+    }
+
+    public synchronized int totalTokens() {
+        int system = systemMessage == null ? 0 : tokens(systemMessage);
+        int summary = summaryLines.isEmpty() ? 0 : summaryTokens + estimateTokens(SUMMARY_HEADER) + MESSAGE_OVERHEAD_TOKENS;
+        return system + summary + turnTokens;
+    }
+
+    private void compact() {
+        int target = tokenBudget * 3 / 4;
+        int folded = 0;
+        while (totalTokens() > target && turns.size() > MIN_VERBATIM_TURNS) {
+            JsonObject oldest = turns.removeFirst();
+            turnTokens -= tokens(oldest);
+            addSummaryLine(oldest);
+            folded++;
+        }
+        // The summary gets at most a quarter of the budget; its oldest lines go first
+        while (summaryTokens > tokenBudget / 4 && !summaryLines.isEmpty()) {
+            summaryTokens -= estimateTokens(summaryLines.removeFirst()) + 1;
+        }
+        // A single huge turn (e.g. a change report with the full dependency diff) must not break the bound either
+        if (totalTokens() > tokenBudget) {
+            int perTurn = Math.max(64, (target - (totalTokens() - turnTokens)) / Math.max(1, turns.size()));
+            for (JsonObject turn : turns) {
+                int before = tokens(turn);
+                if (before > perTurn) {
+                    turn.addProperty("content", truncate(turn.get("content").getAsString(), perTurn * 4));
+                    turnTokens += tokens(turn) - before;
+                }
+            }
+        }
+        epoch++;
+        LOG.info("Chat history compacted: folded {} turns into the summary, now ~{} tokens (budget {})",
+                folded, totalTokens(), tokenBudget);
+    }
+
+    private void addSummaryLine(JsonObject turn) {
+        String content = turn.get("content").getAsString();
+        content = JSON_BLOB.matcher(content).replaceAll("{…}");
+        content = WHITESPACE.matcher(content).replaceAll(" ").trim();
+        int sentenceEnd = content.indexOf(". ");
+        if (sentenceEnd > 0 && sentenceEnd < SUMMARY_LINE_CHARS) content = content.substring(0, sentenceEnd + 1);
+        if (content.length() > SUMMARY_LINE_CHARS) content = content.substring(0, SUMMARY_LINE_CHARS) + "…";
+        String line = "- " + turn.get("role").getAsString() + ": " + content;
+        summaryLines.addLast(line);
+        summaryTokens += estimateTokens(line) + 1;
+    }
+
+    private String summaryText() {
+        return SUMMARY_HEADER + "\n" + String.join("\n", summaryLines);
+    }
+
+    // Keeps the start and the end, which is where questions and conclusions usually are
+    private static String truncate(String content, int maxChars) {
+        if (content.length() <= maxChars) return content;
+        String marker = "\n[… truncated …]\n";
+        int keep = Math.max(0, maxChars - marker.length());
+        return content.substring(0, keep / 2) + marker + content.substring(content.length() - keep / 2);
+    }
+
+    private static JsonObject message(String role, String content) {
+        JsonObject message = new JsonObject();
+        message.addProperty("role", role);
+        message.addProperty("content", content == null ? "" : content);
+        return message;
+    }
+
+    private static int tokens(JsonObject message) {
+        return estimateTokens(message.get("content").getAsString()) + MESSAGE_OVERHEAD_TOKENS;
+    }
+}
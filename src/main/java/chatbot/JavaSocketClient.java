@@ -1,13 +1,28 @@
 package chatbot;
 
 import java.io.*;
-import java.net.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
 import com.google.gson.*;
+import org.slf4j.Logger;
 
 public class JavaSocketClient {
 
     final static String host = "localhost";
     final static int port = 9999;
+    private static final Logger LOG = com.example.my_plugin.LogInitializer.getLogger(JavaSocketClient.class);
+    private static final int POOL_SIZE = Math.max(1, Integer.getInteger("licenseTool.bridge.poolSize", 2));
+    private static final int CONNECT_TIMEOUT_MS = Integer.getInteger("licenseTool.bridge.connectTimeoutMs", 5_000);
+    // Generous by default: a single LLM request can take minutes on a local model
+    private static final long READ_TIMEOUT_MS = Long.getLong("licenseTool.bridge.readTimeoutMs", 300_000L);
+    private static final BridgePool pool = new BridgePool(host, port, POOL_SIZE, CONNECT_TIMEOUT_MS);
+    private static final AtomicLong nextId = new AtomicLong();
+
     public static void main(String[] args) {
         int c = add(1,2);
         System.out.println(c);
@@ -18,31 +33,66 @@ public class JavaSocketClient {
         // System.out.println(promptModel());
     }
 
+    /**
+     * Sends a request to the Python server and waits for its response. Requests go over a small pool of
+     * persistent connections ({@code licenseTool.bridge.poolSize}, default 2) and are correlated by id, so
+     * concurrent callers share connections instead of each opening a socket. Connect and read timeouts are
+     * {@code licenseTool.bridge.connectTimeoutMs} and {@code licenseTool.bridge.readTimeoutMs}.
+     * @return the response, or an empty object if the server could not be reached or did not answer in time
+     */
     public static JsonObject callPython(JsonObject requestJson) {
+        return call(requestJson, null);
+    }
 
-        // Open socket
-        try (Socket socket = new Socket(host, port)){
-
-            // Send JSON
-            OutputStream output = socket.getOutputStream();
-            PrintWriter writer = new PrintWriter(output, true);
-            writer.println(requestJson.toString()); // Gson auto-converts to JSON string
-
-            // Read response
-            InputStream input = socket.getInputStream();
-            BufferedReader reader = new BufferedReader(new InputStreamReader(input));
-            String responseLine = reader.readLine();  // Reads until newline
-            JsonObject responseJson = JsonParser.parseString(responseLine).getAsJsonObject();
-
-            // Return
-            return responseJson;
+    /**
+     * Like {@link #callPython(JsonObject)}, but asks the server to stream partial output, which is handed to
+     * onChunk as it arrives (on the connection's reader thread, so it must return quickly). Functions that cannot
+     * stream, and servers that do not support streaming, only send the final response.
+     */
+    public static JsonObject callPythonStreaming(JsonObject requestJson, Consumer<String> onChunk) {
+        return call(requestJson, onChunk);
+    }
 
-        } catch (IOException e) {
-            System.out.println("I/O Error: " + e.getMessage());
+    private static JsonObject call(JsonObject requestJson, Consumer<String> onChunk) {
+        long id = nextId.incrementAndGet();
+        JsonObject request = requestJson.deepCopy();
+        request.addProperty("id", id);
+        if (onChunk != null) request.addProperty("stream", true);
+
+        BridgeConnection connection = null;
+        CompletableFuture<JsonObject> response = null;
+        // A request that could not be written was not delivered, so it is safe to retry once on a new connection
+        for (int attempt = 0; attempt < 2 && response == null; attempt++) {
+            try {
+                connection = pool.borrow();
+                response = connection.send(id, request, onChunk);
+            } catch (IOException e) {
+                LOG.warn("Could not send request to the Python server: {}", e.getMessage());
+            }
+        }
+        if (response == null) return new JsonObject();
+
+        try {
+            return response.get(READ_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            connection.abandon(id);
+            LOG.warn("No response from the Python server within {} ms", READ_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            connection.abandon(id);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOG.warn("Python server request failed: {}", e.getCause().getMessage());
         }
         return new JsonObject();
     }
 
+    /**
+     * Closes all pooled connections; they are reopened on the next request.
+     */
+    public static void closeConnections() {
+        pool.close();
+    }
+
     public static int add(int a, int b) {
 
         // Create JSON request
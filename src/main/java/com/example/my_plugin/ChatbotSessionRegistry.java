@@ -0,0 +1,133 @@
+package com.example.my_plugin;
+
+import chatbot.ChatbotSession;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.project.Project;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.slf4j.Logger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The chatbot sessions of one project, keyed by model and purpose, so projects never share a conversation and
+ * switching models in one project leaves the others alone. Lookups of existing sessions do not lock, so the
+ * chat and the dependency analysis of several projects can run side by side.
+ *
+ * Sessions that have not been used for a while release their server-side history. Helper sessions are dropped
+ * after {@code licenseTool.llm.sessionIdleMinutes} (default 10). Chat sessions are only closed after
+ * {@code licenseTool.chat.sessionIdleMinutes} (default 240) and stay registered, so the user's conversation
+ * survives and the next prompt replays it into a new server-side session.
+ */
+@Service(Service.Level.PROJECT)
+public final class ChatbotSessionRegistry implements Disposable
+{
+    private static final Logger LOG = LogInitializer.getLogger(ChatbotSessionRegistry.class);
+
+    public enum Purpose
+    {
+        CHAT(Long.getLong("licenseTool.chat.sessionIdleMinutes", 240L)),
+        ANALYSIS(Long.getLong("licenseTool.llm.sessionIdleMinutes", 10L));
+
+        private final long idleMillis;
+
+        Purpose(long idleMinutes) {
+            this.idleMillis = TimeUnit.MINUTES.toMillis(idleMinutes);
+        }
+    }
+
+    private record Key(String model, Purpose purpose) {}
+
+    private static final class Entry
+    {
+        final ChatbotSession session;
+        volatile long lastUsed = System.currentTimeMillis();
+        // Set when an idle chat session was closed, so it is not closed again every minute
+        volatile boolean released;
+
+        Entry(ChatbotSession session) {
+            this.session = session;
+        }
+    }
+
+    private final Project project;
+    private final Map<Key, Entry> sessions = new ConcurrentHashMap<>();
+    private final ScheduledFuture<?> evictionTask;
+
+    public ChatbotSessionRegistry(Project project) {
+        this.project = project;
+        this.evictionTask = AppExecutorUtil.getAppScheduledExecutorService()
+                .scheduleWithFixedDelay(this::evictIdle, 1, 1, TimeUnit.MINUTES);
+    }
+
+    public static ChatbotSessionRegistry getInstance(Project project) {
+        return project.getService(ChatbotSessionRegistry.class);
+    }
+
+    /**
+     * The session for this model and purpose, created with factory on first use.
+     */
+    public ChatbotSession get(String model, Purpose purpose, Supplier<? extends ChatbotSession> factory) {
+        Key key = new Key(model, purpose);
+        Entry entry = sessions.get(key);
+        if (entry == null) {
+            entry = sessions.computeIfAbsent(key, k -> {
+                LOG.info("Creating {} chatbot session for model {} in project {}", purpose, model, project.getName());
+                return new Entry(factory.get());
+            });
+        }
+        entry.lastUsed = System.currentTimeMillis();
+        entry.released = false;
+        return entry.session;
+    }
+
+    /**
+     * Closes all sessions of the given purpose; the next {@link #get} starts a fresh one.
+     */
+    public void reset(Purpose purpose) {
+        sessions.entrySet().removeIf(e -> {
+            if (e.getKey().purpose() != purpose) return false;
+            close(e.getKey(), e.getValue());
+            return true;
+        });
+    }
+
+    private void evictIdle() {
+        long now = System.currentTimeMillis();
+        sessions.entrySet().removeIf(e -> {
+            Entry entry = e.getValue();
+            if (entry.released || now - entry.lastUsed < e.getKey().purpose().idleMillis) return false;
+            if (e.getKey().purpose() == Purpose.CHAT) {
+                LOG.info("Releasing the server-side history of the idle chat session for model {}", e.getKey().model());
+                entry.released = true;
+                close(e.getKey(), entry);
+                return false;
+            }
+            LOG.info("Closing idle {} chatbot session for model {}", e.getKey().purpose(), e.getKey().model());
+            close(e.getKey(), entry);
+            return true;
+        });
+    }
+
+    // Closing talks to the Python server, so it never runs on the caller's thread (which may be the EDT)
+    private static void close(Key key, Entry entry) {
+        AppExecutorUtil.getAppExecutorService().execute(() -> {
+            try {
+                entry.session.close();
+            } catch (Exception e) {
+                LOG.warn("Error closing {} chatbot session for model {}: {}", key.purpose(), key.model(), e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public void dispose() {
+        evictionTask.cancel(false);
+        sessions.forEach(ChatbotSessionRegistry::close);
+        sessions.clear();
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.my_plugin;
+
+import org.slf4j.Logger;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Collapses bursts of pom.xml change notifications into a single dependency analysis.
+ *
+ * A request (re)starts a quiet-period timer; the action only runs once no new request arrived for the whole
+ * period. At most one run is in flight and at most one is queued behind it: requests that arrive while a run
+ * is in flight are folded into that single queued run, which starts as soon as the current one completes.
+ * Because the queued run makes the in-flight one stale, the in-flight run is asked to cancel at that point.
+ * When several poms changed in one burst, the one closest to the file system root (the reactor root in a
+ * multi-module build) is handed to the action.
+ */
+public final class CoalescingScheduler
+{
+    private static final Logger LOG = LogInitializer.getLogger(CoalescingScheduler.class);
+
+    private final ScheduledExecutorService timer;
+    private final long quietPeriodMillis;
+    // Starts a run for the given pom and returns a future completing when the run is over. Called while
+    // holding this scheduler's lock, so it must hand the work off rather than doing it inline.
+    private final Function<String, CompletableFuture<?>> action;
+    // Asks the in-flight run to stop early; its future must still complete once it has actually stopped
+    private final Runnable cancelInFlight;
+
+    private ScheduledFuture<?> pendingTimer;
+    private String pendingPomPath;
+    private CompletableFuture<?> inFlight;
+    private boolean queued;
+    private boolean disposed;
+
+    public CoalescingScheduler(ScheduledExecutorService timer, long quietPeriodMillis,
+                               Function<String, CompletableFuture<?>> action, Runnable cancelInFlight) {
+        this.timer = timer;
+        this.quietPeriodMillis = quietPeriodMillis;
+        this.action = action;
+        this.cancelInFlight = cancelInFlight;
+    }
+
+    public synchronized void request(String pomPath) {
+        if (disposed) return;
+        pendingPomPath = pendingPomPath == null ? pomPath : closestToRoot(pendingPomPath, pomPath);
+        if (pendingTimer != null) {
+            pendingTimer.cancel(false);
+        }
+        pendingTimer = timer.schedule(this::quietPeriodElapsed, quietPeriodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void quietPeriodElapsed() {
+        pendingTimer = null;
+        if (disposed || pendingPomPath == null) return;
+        if (inFlight != null) {
+            // Single flight: fold this burst into the one queued run and abort the now stale one
+            queued = true;
+            LOG.info("Dependency analysis already running, cancelling it and queueing another run for {}", pendingPomPath);
+            cancelInFlight.run();
+            return;
+        }
+        start();
+    }
+
+    private void start() {
+        String pomPath = pendingPomPath;
+        pendingPomPath = null;
+        CompletableFuture<?> run;
+        try {
+            run = action.apply(pomPath);
+        } catch (Throwable t) {
+            run = CompletableFuture.failedFuture(t);
+        }
+        inFlight = run;
+        CompletableFuture<?> thisRun = run;
+        run.whenComplete((result, error) -> finished(thisRun, error));
+    }
+
+    private synchronized void finished(CompletableFuture<?> run, Throwable error) {
+        if (error != null) {
+            LOG.warn("Dependency analysis run failed: {}", error.toString());
+        }
+        if (inFlight == run) {
+            inFlight = null;
+        }
+        if (queued && !disposed && inFlight == null) {
+            queued = false;
+            start();
+        }
+    }
+
+    public synchronized boolean isIdle() {
+        return pendingTimer == null && inFlight == null && !queued;
+    }
+
+    /**
+     * Drops pending and queued requests and cancels the run in flight, if any.
+     */
+    public synchronized void dispose() {
+        disposed = true;
+        if (inFlight != null) {
+            cancelInFlight.run();
+        }
+        queued = false;
+        pendingPomPath = null;
+        if (pendingTimer != null) {
+            pendingTimer.cancel(false);
+            pendingTimer = null;
+        }
+    }
+
+    private static String closestToRoot(String a, String b) {
+        Path pa = Paths.get(a);
+        Path pb = Paths.get(b);
+        return pb.getNameCount() < pa.getNameCount() ? b : a;
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.my_plugin;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Application-level view of the OSADL license compatibility matrix (py_server/matrix.csv).
+ * The matrix is parsed once; SPDX ids are interned into dense ordinals and the verdicts are kept
+ * in a byte table, so a lookup is two map hits and an array read instead of a scan of the CSV.
+ */
+@Service(Service.Level.APP)
+public final class CompatibilityMatrix
+{
+    private static final Logger LOG = LogInitializer.getLogger(CompatibilityMatrix.class);
+    private static final String MATRIX_RESOURCE = "py_server/matrix.csv";
+
+    /**
+     * The verdicts found in the matrix cells. The label is the exact text used by OSADL.
+     */
+    public enum Verdict
+    {
+        UNKNOWN("Unknown"),
+        YES("Yes"),
+        NO("No"),
+        SAME("Same"),
+        DEPENDENCY("Dep."),
+        CHECK_DEPENDENCY("Check dependency"),
+        UNSURE("?");
+
+        private static final Verdict[] VALUES = values();
+
+        private final String label;
+
+        Verdict(String label) { this.label = label; }
+
+        public String getLabel() { return this.label; }
+
+        static Verdict fromLabel(String label)
+        {
+            for (Verdict v : VALUES) {
+                if (v.label.equals(label)) return v;
+            }
+            return UNKNOWN;
+        }
+
+        static Verdict fromCode(byte code) { return VALUES[code]; }
+    }
+
+    // SPDX id -> dense ordinal, shared by rows and columns (the matrix is square)
+    private final Map<String, Integer> index;
+    private final List<String> licenses;
+    // row-major table of Verdict ordinals: verdicts[lead * size + other]
+    private final byte[] verdicts;
+    private final int size;
+
+    public static CompatibilityMatrix getInstance() {
+        return ApplicationManager.getApplication().getService(CompatibilityMatrix.class);
+    }
+
+    public CompatibilityMatrix() {
+        this(loadResource());
+    }
+
+    private CompatibilityMatrix(List<String[]> rows) {
+        if (rows.isEmpty()) {
+            this.index = Collections.emptyMap();
+            this.licenses = Collections.emptyList();
+            this.verdicts = new byte[0];
+            this.size = 0;
+            return;
+        }
+
+        // The header row is "Compatibility*,<id>,<id>,..."; the first column of every other row holds the leading license
+        String[] header = rows.get(0);
+        this.size = header.length - 1;
+        this.index = new HashMap<>(size * 2);
+        List<String> ids = new ArrayList<>(size);
+        for (int j = 1; j < header.length; j++) {
+            String id = header[j].trim();
+            index.put(id, j - 1);
+            ids.add(id);
+        }
+        this.licenses = Collections.unmodifiableList(ids);
+
+        this.verdicts = new byte[size * size]; // zero == Verdict.UNKNOWN
+        for (int i = 1; i < rows.size(); i++) {
+            String[] row = rows.get(i);
+            Integer lead = index.get(row[0].trim());
+            if (lead == null) {
+                LOG.warn("Compatibility matrix row for {} has no matching column, skipping", row[0]);
+                continue;
+            }
+            for (int j = 1; j < row.length && j <= size; j++) {
+                verdicts[lead * size + (j - 1)] = (byte) Verdict.fromLabel(row[j].trim()).ordinal();
+            }
+        }
+        LOG.info("Compatibility matrix loaded: {} licenses", size);
+    }
+
+    /**
+     * Builds a matrix from CSV text in the OSADL layout, e.g. for a matrix that does not come from the plugin resources.
+     */
+    public static CompatibilityMatrix parse(Reader csv) throws IOException {
+        return new CompatibilityMatrix(readRows(csv));
+    }
+
+    private static List<String[]> loadResource() {
+        InputStream is = CompatibilityMatrix.class.getClassLoader().getResourceAsStream(MATRIX_RESOURCE);
+        if (is == null) {
+            LOG.error("Compatibility matrix resource {} not found", MATRIX_RESOURCE);
+            return Collections.emptyList();
+        }
+        try (Reader reader = new InputStreamReader(is, StandardCharsets.UTF_8)) {
+            return readRows(reader);
+        } catch (IOException e) {
+            LOG.error("Failed to read compatibility matrix: {}", e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    private static List<String[]> readRows(Reader csv) throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(csv);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.isBlank()) rows.add(splitCsvLine(line));
+        }
+        return rows;
+    }
+
+    // Fields may be quoted ("Check dependency"); quotes inside a quoted field are doubled
+    static String[] splitCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') field.append(c);
+                else if (i + 1 < line.length() && line.charAt(i + 1) == '"') field.append(line.charAt(++i));
+                else quoted = false;
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    /**
+     * @return the dense ordinal of an SPDX id, or -1 if the matrix does not know the license
+     */
+    public int ordinalOf(@Nullable String spdxId) {
+        if (spdxId == null) return -1;
+        Integer ordinal = index.get(spdxId);
+        return ordinal != null ? ordinal : -1;
+    }
+
+    /**
+     * O(1) lookup by ordinals (as returned by {@link #ordinalOf(String)}).
+     */
+    public @NotNull Verdict verdict(int leadOrdinal, int otherOrdinal) {
+        return Verdict.fromCode(verdicts[leadOrdinal * size + otherOrdinal]);
+    }
+
+    /**
+     * @param leadLicense SPDX id of the leading license (the project's own license)
+     * @param otherLicense SPDX id of the license being brought in
+     * @return the verdict, or null if either license is not part of the matrix
+     */
+    public @Nullable Verdict verdict(String leadLicense, String otherLicense) {
+        int lead = ordinalOf(leadLicense);
+        int other = ordinalOf(otherLicense);
+        if (lead < 0 || other < 0) return null;
+        return verdict(lead, other);
+    }
+
+    public boolean contains(String spdxId) {
+        return index.containsKey(spdxId);
+    }
+
+    public List<String> getLicenses() {
+        return licenses;
+    }
+
+    public int size() {
+        return size;
+    }
+}
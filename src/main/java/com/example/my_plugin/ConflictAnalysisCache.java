@@ -0,0 +1,165 @@
+package com.example.my_plugin;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.Service;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Application-wide, disk-backed cache of LLM answers about license pairs: the conflict finding (conflict or not,
+ * reason and A/B category) from analyzeConflicts, stored as JSON.
+ *
+ * Keys combine both licenses, the model and a hash of the prompts used, so editing a prompt
+ * or switching models simply stops matching old entries. Entries expire after {@code licenseTool.llm.cacheTtlDays}
+ * (default 30) days and the least recently used ones are dropped beyond {@code licenseTool.llm.cacheMaxEntries}
+ * (default 2000). The cache lives in the IDE system directory, so it is shared by all projects.
+ */
+@Service(Service.Level.APP)
+public final class ConflictAnalysisCache
+{
+    private static final Logger LOG = LogInitializer.getLogger(ConflictAnalysisCache.class);
+
+    private static final int FORMAT_VERSION = 3;
+    private static final long TTL_MILLIS = TimeUnit.DAYS.toMillis(Long.getLong("licenseTool.llm.cacheTtlDays", 30L));
+    private static final int MAX_ENTRIES = Integer.getInteger("licenseTool.llm.cacheMaxEntries", 2000);
+
+    private record Entry(String value, long created) {}
+
+    private final Path file;
+    // Wall-clock milliseconds, replaceable in tests
+    private final LongSupplier clock;
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private boolean dirty;
+
+    public ConflictAnalysisCache() {
+        this(Paths.get(PathManager.getSystemPath(), "license-tool", "conflict-cache.json"));
+    }
+
+    ConflictAnalysisCache(Path file) {
+        this(file, System::currentTimeMillis);
+    }
+
+    ConflictAnalysisCache(Path file, LongSupplier clock) {
+        this.file = file;
+        this.clock = clock;
+        load();
+    }
+
+    public static ConflictAnalysisCache getInstance() {
+        return ApplicationManager.getApplication().getService(ConflictAnalysisCache.class);
+    }
+
+    /**
+     * Hash identifying a prompt set; pass the system prompt and the input template.
+     */
+    public static String promptHash(String... prompts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String prompt : prompts) {
+                digest.update((prompt == null ? "" : prompt).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest(), 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public static String key(String ownLicense, String otherLicense, String model, String promptHash) {
+        return ownLicense + "|" + otherLicense + "|" + model + "|" + promptHash;
+    }
+
+    public synchronized @Nullable String get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) return null;
+        if (clock.getAsLong() - entry.created() > TTL_MILLIS) {
+            entries.remove(key);
+            dirty = true;
+            return null;
+        }
+        LOG.info("Conflict analysis cache hit: {}", key);
+        return entry.value();
+    }
+
+    public synchronized void put(String key, String value) {
+        entries.put(key, new Entry(value, clock.getAsLong()));
+        dirty = true;
+    }
+
+    /**
+     * Writes the cache to disk if it changed since the last save.
+     */
+    public synchronized void save() {
+        if (!dirty) return;
+        JsonObject root = new JsonObject();
+        root.addProperty("version", FORMAT_VERSION);
+        JsonObject map = new JsonObject();
+        // Least recently used first, which is also the order load() restores it in
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            JsonObject value = new JsonObject();
+            value.addProperty("value", e.getValue().value());
+            value.addProperty("created", e.getValue().created());
+            map.add(e.getKey(), value);
+        }
+        root.add("entries", map);
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                writer.write(root.toString());
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+        } catch (IOException e) {
+            LOG.warn("Failed to save conflict analysis cache: {}", e.getMessage());
+        }
+    }
+
+    private void load() {
+        if (!Files.isRegularFile(file)) return;
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            JsonObject root = JsonParser.parseReader(reader).getAsJsonObject();
+            if (!root.has("version") || root.get("version").getAsInt() != FORMAT_VERSION) {
+                LOG.info("Ignoring conflict analysis cache with unknown format: {}", file);
+                return;
+            }
+            long now = clock.getAsLong();
+            for (Map.Entry<String, JsonElement> e : root.getAsJsonObject("entries").entrySet()) {
+                JsonObject value = e.getValue().getAsJsonObject();
+                long created = value.get("created").getAsLong();
+                if (now - created <= TTL_MILLIS) {
+                    entries.put(e.getKey(), new Entry(value.get("value").getAsString(), created));
+                }
+            }
+            LOG.info("Loaded {} conflict analysis cache entries from {}", entries.size(), file);
+        } catch (Exception e) {
+            LOG.warn("Unreadable conflict analysis cache {}: {}", file, e.toString());
+        }
+    }
+}
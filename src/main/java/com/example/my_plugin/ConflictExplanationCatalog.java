@@ -0,0 +1,125 @@
+package com.example.my_plugin;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Canned explanations for clear-cut matrix verdicts, so they need no LLM call. Every license of the matrix
+ * belongs to a family (licenses/license-families.csv), and licenses/conflict-explanations.csv maps
+ * (own family, other family, verdict) to a category and the id of a reason in licenses/conflict-reasons.csv,
+ * e.g. strong copyleft brought into a permissive project. Pairs without an entry are left to the LLM.
+ */
+@Service(Service.Level.APP)
+public final class ConflictExplanationCatalog
+{
+    private static final Logger LOG = LogInitializer.getLogger(ConflictExplanationCatalog.class);
+    private static final String FAMILIES_RESOURCE = "licenses/license-families.csv";
+    private static final String REASONS_RESOURCE = "licenses/conflict-reasons.csv";
+    private static final String EXPLANATIONS_RESOURCE = "licenses/conflict-explanations.csv";
+
+    /**
+     * @param category "A" if the tool can address the conflict, "B" if it needs a legal expert
+     */
+    public record Explanation(String category, String reason) {}
+
+    private record Key(String ownFamily, String otherFamily, CompatibilityMatrix.Verdict verdict) {}
+
+    // SPDX id -> family
+    private final Map<String, String> families = new HashMap<>();
+    // Reasons are templates with {myLicense} and {otherLicense} placeholders
+    private final Map<Key, Explanation> explanations = new HashMap<>();
+
+    public static ConflictExplanationCatalog getInstance() {
+        return ApplicationManager.getApplication().getService(ConflictExplanationCatalog.class);
+    }
+
+    public ConflictExplanationCatalog() {
+        this(loadResource(FAMILIES_RESOURCE, 2), loadResource(REASONS_RESOURCE, 2), loadResource(EXPLANATIONS_RESOURCE, 5));
+    }
+
+    ConflictExplanationCatalog(List<String[]> familyRows, List<String[]> reasonRows, List<String[]> explanationRows) {
+        for (String[] row : familyRows) {
+            if (row.length == 2) families.put(row[0].trim(), row[1].trim());
+        }
+        // reason id -> template
+        Map<String, String> reasons = new HashMap<>();
+        for (String[] row : reasonRows) {
+            if (row.length == 2) reasons.put(row[0].trim(), row[1].trim());
+        }
+        for (String[] row : explanationRows) {
+            if (row.length != 5) continue;
+            CompatibilityMatrix.Verdict verdict = CompatibilityMatrix.Verdict.fromLabel(row[2].trim());
+            String category = row[3].trim();
+            String reason = reasons.get(row[4].trim());
+            if (verdict == CompatibilityMatrix.Verdict.UNKNOWN || reason == null || !(ConflictFinding.FIXABLE.equals(category)
+                    || ConflictFinding.NEEDS_LEGAL_EXPERT.equals(category))) {
+                LOG.warn("Skipping invalid conflict explanation for {} / {}", row[0], row[1]);
+                continue;
+            }
+            explanations.put(new Key(row[0].trim(), row[1].trim(), verdict), new Explanation(category, reason));
+        }
+        LOG.info("Conflict explanation catalog loaded: {} license families, {} explanations", families.size(), explanations.size());
+    }
+
+    /**
+     * @param license an SPDX id, or a license name or URL listed in licenses/license-aliases.csv
+     * @return the family of the license, e.g. "strong-copyleft", or null if the catalog does not know the license
+     */
+    public @Nullable String familyOf(@Nullable String license) {
+        if (license == null) return null;
+        String family = families.get(license);
+        if (family != null) return family;
+        String spdxId = PomLicenses.aliasedId(license);
+        return spdxId == null ? null : families.get(spdxId);
+    }
+
+    /**
+     * @param ownLicense SPDX id of the project's own license
+     * @param otherLicense SPDX id of the license being brought in
+     * @param verdictLabel the matrix verdict for the pair, as in {@link CompatibilityMatrix.Verdict#getLabel()}
+     * @return the category and reason for the pair, or null if the catalog has no explanation for it
+     */
+    public @Nullable Explanation explain(String ownLicense, String otherLicense, String verdictLabel) {
+        String ownFamily = familyOf(ownLicense);
+        String otherFamily = familyOf(otherLicense);
+        if (ownFamily == null || otherFamily == null) return null;
+        Explanation template = explanations.get(new Key(ownFamily, otherFamily, CompatibilityMatrix.Verdict.fromLabel(verdictLabel)));
+        if (template == null) return null;
+        return new Explanation(template.category(),
+                template.reason().replace("{myLicense}", ownLicense).replace("{otherLicense}", otherLicense));
+    }
+
+    // Rows after the header line; the last of the columns may contain commas
+    private static List<String[]> loadResource(String resource, int columns) {
+        InputStream is = ConflictExplanationCatalog.class.getClassLoader().getResourceAsStream(resource);
+        if (is == null) {
+            LOG.error("Conflict explanation resource {} not found", resource);
+            return Collections.emptyList();
+        }
+        List<String[]> rows = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+            reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) rows.add(line.split(",", columns));
+            }
+        } catch (IOException e) {
+            LOG.error("Failed to read {}: {}", resource, e.getMessage());
+            return Collections.emptyList();
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.my_plugin;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * One license's entry in the structured answer of the conflict analysis prompt:
+ * {@code {"license": "...", "conflict": true|false, "reason": "...", "category": "A"|"B"}}.
+ * Category A means the conflict can be addressed with the tool's recommendations, B that it needs a legal expert;
+ * both are only required when there is a conflict.
+ */
+record ConflictFinding(String license, boolean conflict, String reason, String category)
+{
+    static final String FIXABLE = "A";
+    static final String NEEDS_LEGAL_EXPERT = "B";
+
+    /**
+     * Parses the model's answer, which should be a JSON array of findings (possibly wrapped in a code fence or in
+     * an object). Findings that do not match the schema, or are for licenses that were not asked about, are left
+     * out, so the caller can ask again for whatever is missing.
+     * @return the valid findings by license, spelled as in expectedLicenses
+     */
+    static Map<String, ConflictFinding> parse(String answer, Collection<String> expectedLicenses) {
+        Map<String, String> expected = new HashMap<>();
+        for (String license : expectedLicenses) expected.put(normalize(license), license);
+
+        Map<String, ConflictFinding> findings = new LinkedHashMap<>();
+        JsonArray array = findArray(answer);
+        if (array == null) return findings;
+        for (JsonElement element : array) {
+            ConflictFinding finding = fromJson(element);
+            if (finding == null) continue;
+            String license = expected.get(normalize(finding.license));
+            if (license != null) {
+                findings.putIfAbsent(license, new ConflictFinding(license, finding.conflict, finding.reason, finding.category));
+            }
+        }
+        return findings;
+    }
+
+    /**
+     * Validates one finding against the schema.
+     * @return the finding, or null if it is malformed
+     */
+    static @Nullable ConflictFinding fromJson(JsonElement element) {
+        if (element == null || !element.isJsonObject()) return null;
+        JsonObject object = element.getAsJsonObject();
+        String license = string(object, "license");
+        JsonElement conflict = object.get("conflict");
+        if (license == null || license.isBlank() || conflict == null || !conflict.isJsonPrimitive()
+                || !conflict.getAsJsonPrimitive().isBoolean()) {
+            return null;
+        }
+        String reason = string(object, "reason");
+        String category = string(object, "category");
+        if (!conflict.getAsBoolean()) {
+            return new ConflictFinding(license, false, reason == null ? "" : reason.trim(), null);
+        }
+        category = category == null ? null : category.trim().toUpperCase(Locale.ROOT);
+        if (reason == null || reason.isBlank() || !(FIXABLE.equals(category) || NEEDS_LEGAL_EXPERT.equals(category))) {
+            return null;
+        }
+        return new ConflictFinding(license, true, reason.trim(), category);
+    }
+
+    JsonObject toJson() {
+        JsonObject object = new JsonObject();
+        object.addProperty("license", license);
+        object.addProperty("conflict", conflict);
+        object.addProperty("reason", reason);
+        if (category != null) object.addProperty("category", category);
+        return object;
+    }
+
+    private static @Nullable String string(JsonObject object, String member) {
+        JsonElement value = object.get(member);
+        if (value == null || !value.isJsonPrimitive() || !value.getAsJsonPrimitive().isString()) return null;
+        return value.getAsString();
+    }
+
+    private static String normalize(String license) {
+        return license.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // The outermost array in the answer, also when the model adds prose or a code fence around it
+    private static @Nullable JsonArray findArray(String answer) {
+        if (answer == null) return null;
+        int start = answer.indexOf('[');
+        int end = answer.lastIndexOf(']');
+        try {
+            if (start >= 0 && end > start) {
+                return JsonParser.parseString(answer.substring(start, end + 1)).getAsJsonArray();
+            }
+            // A single finding, or an object holding the array
+            int objectStart = answer.indexOf('{');
+            int objectEnd = answer.lastIndexOf('}');
+            if (objectStart < 0 || objectEnd <= objectStart) return null;
+            JsonObject object = JsonParser.parseString(answer.substring(objectStart, objectEnd + 1)).getAsJsonObject();
+            if (object.has("license")) {
+                JsonArray single = new JsonArray();
+                single.add(object);
+                return single;
+            }
+            for (Map.Entry<String, JsonElement> member : object.entrySet()) {
+                if (member.getValue().isJsonArray()) return member.getValue().getAsJsonArray();
+            }
+        } catch (JsonParseException | IllegalStateException e) {
+            return null;
+        }
+        return null;
+    }
+}
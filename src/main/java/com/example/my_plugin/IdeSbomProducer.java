@@ -0,0 +1,21 @@
+package com.example.my_plugin;
+
+import com.intellij.openapi.progress.ProgressIndicator;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Produces the project's components from a dependency model the IDE has already resolved, in place of a
+ * CycloneDX Maven run. Implementations are registered as project services from optional plugin descriptors,
+ * so {@code project.getService(IdeSbomProducer.class)} is null when the IDE lacks the plugin they build on.
+ */
+public interface IdeSbomProducer
+{
+    /**
+     * @param fingerprint the {@link PomFingerprint} of the poms the components are wanted for, null if unknown
+     * @return the components, the same ones a CycloneDX BOM would list, or null if the IDE model cannot stand in
+     * for a CycloneDX run right now (project not imported, dependencies not resolved, or model behind the poms)
+     */
+    @Nullable List<SbomComponent> collect(ProgressIndicator indicator, @Nullable String fingerprint);
+}
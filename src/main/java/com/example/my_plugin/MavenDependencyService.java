@@ -1,5 +1,7 @@
 package com.example.my_plugin;
 
+import com.intellij.openapi.progress.ProgressIndicator;
+
 import java.io.File;
 
 // Creates a project-level service for the pom.xml listener.
@@ -8,6 +10,9 @@ public interface MavenDependencyService
 {
     void flagNewDependency(String pomPath);
 
+    // Same as above, reporting progress on (and cancellable through) the given indicator.
+    void flagNewDependency(String pomPath, ProgressIndicator indicator);
+
     // Generate SBOM for the project and return prev/current SBOM files (prev may be null).
     File[] genSbom(String pomPath);
 
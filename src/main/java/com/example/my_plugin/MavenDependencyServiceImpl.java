@@ -4,8 +4,13 @@ import chatbot.ChatbotSession;
 import chatbot.ChatbotSessionLlamaPython;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.project.Project;
 
 import com.intellij.openapi.ui.Messages;
@@ -20,9 +25,8 @@ import java.nio.file.Paths;
 import controller.LicensingController;
 import org.apache.commons.io.IOUtils;
 import org.json.JSONObject;
-import org.w3c.dom.*;
-import javax.xml.parsers.*;
 import java.util.*;
+import java.util.function.Function;
 
 import com.google.gson.JsonArray;
 
@@ -30,6 +34,7 @@ import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.openapi.vfs.VirtualFileManager;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 
 
@@ -39,8 +44,30 @@ public final class MavenDependencyServiceImpl implements MavenDependencyService,
 {
     private final Project project;
     private static final Logger LOG = com.example.my_plugin.LogInitializer.getLogger(MavenDependencyServiceImpl.class);
+    private static final String HELPER_MODEL = "gpt-4o"; //TODO ideally we can configure this around the user's settings
+    private static final String REASON_FAILED = "Chatbot failed to analyze license conflicts.";
+    private static final String UNKNOWN_RELATIONSHIP = "Unknown license relationship.";
+    //Licenses asked about in one structured prompt; bigger groups mean fewer requests but longer answers to get right
+    private static final int ANALYSIS_GROUP_SIZE = Math.max(1, Integer.getInteger("licenseTool.llm.analysisGroupSize", 10));
+    //Answer clear "No" verdicts from the local explanation catalog, leaving only the ambiguous ones to the LLM
+    private static final boolean MATRIX_FAST_PATH = Boolean.parseBoolean(System.getProperty("licenseTool.llm.matrixFastPath", "true"));
+    private static final String ANALYSIS_RETRY_NOTE = "\n\nYour previous answer could not be used. Answer with nothing but a JSON array " +
+            "holding one object per listed license, each with the fields \"license\", \"conflict\" (true or false), \"reason\" and \"category\" (\"A\" or \"B\").";
     // private final MavenDependencyListener listener;
 
+    /**
+     * Where the SBOM comes from, from {@code licenseTool.sbom.producer}: {@code cyclonedx} always runs the CycloneDX
+     * Maven plugin, {@code ide} only uses the dependency model the IDE has resolved (see {@link IdeSbomProducer}),
+     * and {@code auto} (the default) uses the IDE model when it is usable and CycloneDX otherwise.
+     */
+    enum SbomProducer { CYCLONEDX, IDE, AUTO }
+
+    private static final SbomProducer SBOM_PRODUCER = switch (System.getProperty("licenseTool.sbom.producer", "auto").trim().toLowerCase()) {
+        case "cyclonedx" -> SbomProducer.CYCLONEDX;
+        case "ide" -> SbomProducer.IDE;
+        default -> SbomProducer.AUTO;
+    };
+
     public MavenDependencyServiceImpl(Project project) {
         this.project = project;
     }
@@ -50,12 +77,50 @@ public final class MavenDependencyServiceImpl implements MavenDependencyService,
         //See parent and https://plugins.jetbrains.com/docs/intellij/disposers.html?from=jetbrains.org#automatically-disposed-objects
     }
 
+    /**
+     * The stages of the dependency analysis pipeline, in the order they run. Entering a stage checks for
+     * cancellation and reports the stage on the progress indicator.
+     */
+    enum Stage
+    {
+        FINGERPRINT("Checking pom.xml files for dependency changes"),
+        SBOM("Generating SBOM"),
+        DIFF("Comparing with the previous SBOM"),
+        MATRIX("Checking license compatibility"),
+        ANALYSIS("Explaining and categorizing conflicts"),
+        REPORT("Reporting conflicts");
+
+        private final String text;
+
+        Stage(String text) {
+            this.text = text;
+        }
+
+        void enter(ProgressIndicator indicator) {
+            indicator.checkCanceled();
+            indicator.setText(text);
+            indicator.setFraction((double) ordinal() / values().length);
+            LOG.info("Dependency analysis stage: {}", name());
+        }
+    }
+
     @Override
     public void flagNewDependency(String pomPath) {
+        flagNewDependency(pomPath, new EmptyProgressIndicator());
+    }
+
+    /**
+     * Runs the analysis pipeline (see {@link Stage}) for a changed pom.xml. Cancelling the indicator stops the
+     * run at the next stage boundary or LLM request, and kills the Maven process while the SBOM is generated;
+     * the run then ends with a {@link ProcessCanceledException}.
+     */
+    @Override
+    public void flagNewDependency(String pomPath, ProgressIndicator indicator) {
         // This method is called when a new dependency is added to the pom.xml file.
         LOG.info("New dependency detected, starting analysis pipeline.");
+        indicator.setIndeterminate(false);
         // return the depJson object to the controller
-        JsonObject depJson = getChanges(pomPath);
+        JsonObject depJson = getChanges(pomPath, indicator);
         if(!depJson.isEmpty()) {
             System.out.println("flagNewDependency - licenseChange called");
             // write the depJson object to file for debugging purposes
@@ -79,13 +144,17 @@ public final class MavenDependencyServiceImpl implements MavenDependencyService,
 
                 License myLicense = this.project.getService(LicensingController.class).getTargetLicense(); //gives "unknown" if config not found
 
-                ArrayList<Map<License, String>> conflicts = getConflicts(myLicense, depJson);
+                Stage.MATRIX.enter(indicator);
+                Map<License, String> verdicts = getMatrixVerdicts(myLicense, depJson);
+                Stage.ANALYSIS.enter(indicator);
+                ArrayList<Map<License, String>> conflicts = analyzeConflicts(myLicense, verdicts);
 
                 // Submit the information to the chatbot
                 //toolWindow.submitMessage("In my project these dependencies has been removed or added :\n"
                 //        + conflicts.toString() + "\n It would be great if you could analyze it and provide me with the information about the licenses of these dependencies and based on this give me a suggestion on how i can redistribute my project.\n");
                 if (!conflicts.get(0).isEmpty() || !conflicts.get(1).isEmpty() || !conflicts.get(2).isEmpty()) //only submit the message if a conflict is detected
                 {
+                    Stage.REPORT.enter(indicator);
                     //Read in the prompt template to be used for supplying the model with information about the change
                     String inputPromptTemplate;
                     try {
@@ -111,6 +180,8 @@ public final class MavenDependencyServiceImpl implements MavenDependencyService,
 
                     toolWindow.submitMessage(inputPrompt);
                 }
+                // Reported (or nothing to report), so the next run no longer needs to carry these changes
+                PendingChanges.clear(licenseToolDir());
             }
 
             System.out.println("flagNewDependency - engageChatbot called");
@@ -125,11 +196,54 @@ public final class MavenDependencyServiceImpl implements MavenDependencyService,
     }
 
     public JsonObject getChanges(String pomPath) {
+        return getChanges(pomPath, new EmptyProgressIndicator());
+    }
+
+    /**
+     * The dependency changes since the last reported run: the ones found now, merged with those of earlier runs
+     * that ended before reporting (see {@link PendingChanges}).
+     */
+    JsonObject getChanges(String pomPath, ProgressIndicator indicator) {
+        JsonObject changes = diffDependencies(pomPath, indicator);
+        if (project.getBasePath() == null) return changes;
+        return PendingChanges.carry(licenseToolDir(), changes);
+    }
+
+    private JsonObject diffDependencies(String pomPath, ProgressIndicator indicator) {
         // This method is called when a pom.xml file is added, modified, or removed.
         // It should analyze the dependencies and generate a new SBOM.
         System.out.println("getChanges - diffSbom called");
         LOG.info("Analyzing dependency changes via SBOM diff.");
-        File[] sbomFiles = genSbom(pomPath);
+        Stage.FINGERPRINT.enter(indicator);
+        String basePath = project.getBasePath();
+        String fingerprint = basePath == null ? null : PomFingerprint.compute(Paths.get(basePath));
+        if (fingerprint != null && PomFingerprint.matchesStored(licenseToolDir(), fingerprint)
+                && (licenseToolDir().resolve("bom.xml").toFile().exists() || snapshotPath().toFile().exists())) {
+            // Only non-dependency parts of the poms changed, so a new SBOM would be identical to the last one
+            LOG.info("Dependency inputs unchanged (fingerprint {}), skipping SBOM regeneration.", fingerprint);
+            return new JsonObject();
+        }
+        Stage.SBOM.enter(indicator);
+        if (SBOM_PRODUCER != SbomProducer.CYCLONEDX) {
+            List<SbomComponent> ideComponents = componentsFromIdeModel(indicator, fingerprint);
+            if (ideComponents != null) {
+                Stage.DIFF.enter(indicator);
+                return changesFromComponents(ideComponents, fingerprint);
+            }
+            if (SBOM_PRODUCER == SbomProducer.IDE) {
+                LOG.warn("licenseTool.sbom.producer=ide but the IDE Maven model is not usable, skipping dependency analysis.");
+                return new JsonObject();
+            }
+        }
+        if (ModuleSboms.ENABLED && basePath != null) {
+            List<SbomComponent> moduleComponents = new ModuleSboms(Paths.get(basePath), licenseToolDir()).update(indicator);
+            if (moduleComponents != null) {
+                Stage.DIFF.enter(indicator);
+                return changesFromComponents(moduleComponents, fingerprint);
+            }
+        }
+        File[] sbomFiles = genSbom(pomPath, fingerprint, indicator);
+        Stage.DIFF.enter(indicator);
         File prevSbom = sbomFiles[0];
         File currSbom = sbomFiles[1];
         if (currSbom == null) {
@@ -179,7 +293,15 @@ public final class MavenDependencyServiceImpl implements MavenDependencyService,
             System.out.println("No previous SBOM found, only the current SBOM will be analyzed.");
             LOG.info("No previous SBOM found, analyzing current SBOM only.");
             try {
-                List<Dependency> currDependencies = parseSetToList(extractComponentKeys(currSbom));
+                List<SbomComponent> currComponents = SbomReader.readComponents(currSbom);
+                SbomSnapshot snapshot = SbomSnapshot.read(snapshotPath());
+                saveSnapshot(currSbom, currComponents);
+                if (snapshot != null) {
+                    // The last state came from the IDE model or module fragments, which keep no bom.xml
+                    LOG.info("Comparing with the components of the last SBOM snapshot.");
+                    return changesJson(diffComponents(keysOf(snapshot.getComponents().values()), currComponents));
+                }
+                List<Dependency> currDependencies = parseSetToList(keysOf(currComponents));
                 // Create a JSON object to hold the results
                 JsonObject diffResults = new JsonObject();
                 JsonArray addedArray = new JsonArray();
@@ -212,7 +334,21 @@ public final class MavenDependencyServiceImpl implements MavenDependencyService,
      */
     public ArrayList<Map<License, String>> getConflicts(License myLicense, JsonObject changes)
     {
+        Map<License, String> conflicts = getMatrixVerdicts(myLicense, changes);
+
+        //Via the chatbot, verify conflicts, derive reasons for them and categorize them into what we can fix vs what we can't
+        ArrayList<Map<License, String>> categorizedConflicts = analyzeConflicts(myLicense, conflicts);
+        //Return the conflicts paired with their descriptors
+        return categorizedConflicts;
+    }
 
+    /**
+     * Looks up every license of the added components against the target project's license in the compatibility
+     * matrix. Licenses missing from the matrix are left out.
+     * @return the added licenses mapped to their Yes/No/Dep./? style matrix verdict
+     */
+    public Map<License, String> getMatrixVerdicts(License myLicense, JsonObject changes)
+    {
         Map<License, String> conflicts = new HashMap<>();
 
         //Extract licenses from added components
@@ -235,207 +371,166 @@ public final class MavenDependencyServiceImpl implements MavenDependencyService,
             }
         }
 
-        //Compare licenses against compatibility matrix to identify if any conflicts exist
-
-        String basePath = project.getBasePath();
-        // Path matrixPath = Paths.get(basePath, ".license-tool", "matrix.csv");
-        // String py_serverPath = System.getenv("PYTHONPATH");
-        String py_serverPath = System.getProperty("py_serverPath");
-        //System.out.println("py_serverPath: " + py_serverPath);
-        Path matrixPath = Paths.get(py_serverPath, "/matrix.csv");
+        //Compare licenses against the (preloaded) compatibility matrix to identify if any conflicts exist
+        CompatibilityMatrix matrix = CompatibilityMatrix.getInstance();
 
-        List<String[]> matrix = new ArrayList<>();
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(matrixPath.toFile()))) //Read the compatibility matrix in
+        //Find the row corresponding with my license, then look up every added license in it
+        int myOrdinal = matrix.ordinalOf(myLicense.getType());
+        if (myOrdinal >= 0)
         {
-            String line = reader.readLine();
-            while (line != null)
+            for (License potentialConflict : allLicenses)
             {
-                String[] licenseArr = line.split(",");
-                matrix.add(licenseArr);
-                line = reader.readLine();
-            }
-        } catch (FileNotFoundException e) {
-            throw new RuntimeException(e);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-
-        //Find the row corresponding with my license, then find all conflicts
-        for (int i = 1; i < matrix.size(); i++)
-        {
-            String[] licenseArr = matrix.get(i);
-            if (licenseArr[0].equals(myLicense.getType()))
-            {
-                for (License potentialConflict : allLicenses)
+                int pcOrdinal = matrix.ordinalOf(potentialConflict.getType());
+                if (pcOrdinal >= 0)
                 {
-                    String pcType = potentialConflict.getType();
-                    for (int j = 0; j < matrix.get(0).length; j++)
-                    {
-                        String matLicense = matrix.get(0)[j];
-                        if (matLicense.equals(pcType))
-                        {
-                            conflicts.put(potentialConflict, matrix.get(i)[j]);
-                        }
-                    }
+                    conflicts.put(potentialConflict, matrix.verdict(myOrdinal, pcOrdinal).getLabel());
                 }
-                break;
             }
         }
 
-        //Via the chatbot, verify conflicts and derive reasons for them
-        Map<License, String> descriptiveConflicts = deriveConflictReasons(myLicense, conflicts);
-        //Categorize the conflicts into what we can fix vs what we can't
-        ArrayList<Map<License, String>> categorizedConflicts = categorizeConflicts(myLicense, descriptiveConflicts);
-        //Return the conflicts paired with their descriptors
-        return categorizedConflicts;
+        return conflicts;
+    }
+
+    // Helper sessions only send stateless prompts on top of their system prompt, so one per purpose is reused
+    private ChatbotSessionLlamaPython helperSession(ChatbotSessionRegistry.Purpose purpose, String systemPrompt) {
+        return (ChatbotSessionLlamaPython) ChatbotSessionRegistry.getInstance(project).get(HELPER_MODEL, purpose,
+                () -> new ChatbotSessionLlamaPython("localhost", HELPER_MODEL, systemPrompt)); //TODO split up classes for different models
     }
 
     /**
      * Given a dictionary of potential conflicts mapped to string indicators of whether there is a conflict, prune all
-     * items that are presumed to not be conflicts, and replace basic indicators with detailed descriptions for the
-     * rest.
+     * items that are presumed to not be conflicts, explain clear-cut conflicts from the {@link ConflictExplanationCatalog},
+     * and ask the chatbot about the rest in one structured request per group of licenses, which both explains each
+     * conflict and decides whether the tool can address it.
      * @param ownLicense target project's license
      * @param potentialConflicts dictionary of potentially conflict-inducing licenses mapped to yes/no/dep./? indicators
-     *                           (from intermediate in getConflicts)
-     * @return dictionary of confirmed conflicting licenses mapped to descriptions of the conflicts
+     *                           (from getMatrixVerdicts)
+     * @return Three mappings of licenses to descriptions of how they conflict with your repo: 1) that the tool thinks
+     * it can address, 2) that it thinks need a legal expert, and 3) that are unknown/uncategorized
      */
-    public Map<License, String> deriveConflictReasons(License ownLicense, Map<License, String> potentialConflicts)
+    public ArrayList<Map<License, String>> analyzeConflicts(License ownLicense, Map<License, String> potentialConflicts)
     {
         Set<String> checkedLicenses = new HashSet<>();
-        Map<License, String> conflicts = new HashMap<>();
 
         //Read in the system prompt for the helper instance
         String systemPrompt;
         try {
-            InputStream is = LicensingController.class.getClassLoader().getResourceAsStream("prompts/system-reasons.txt");
+            InputStream is = LicensingController.class.getClassLoader().getResourceAsStream("prompts/system-conflict-analysis.txt");
             systemPrompt = IOUtils.toString(is, "UTF-8");
         }
         catch (Exception e)
         {
             //Unable to load system prompt
-            systemPrompt = "You are a component in an IDE designed to analyze software license conflicts, determining whether given licenses conflict, and, if so, why.";
+            systemPrompt = "You are a component in an IDE designed to analyze software license conflicts, determining whether given licenses conflict, " +
+                    "why, and whether an LLM can make recommendations to address the conflict or it requires the counsel of a legal expert.";
         }
 
         //Read in the template to be used when prompting the helper instance
         String inputPromptTemplate;
         try {
-            InputStream is = LicensingController.class.getClassLoader().getResourceAsStream("prompts/reasons-input-template.txt");
+            InputStream is = LicensingController.class.getClassLoader().getResourceAsStream("prompts/conflict-analysis-input-template.txt");
             inputPromptTemplate = IOUtils.toString(is, "UTF-8");
         }
         catch (Exception e)
         {
             //Unable to load input prompt template
-            inputPromptTemplate = "My software license, {myLicense}, " +
-            "may conflict with another license, {otherLicense}" +
-                    ". If they conflict, please give me a concise, one-sentence description of why these two " +
-                    "licenses may conflict with each other, including any conditions upon that conflict." +
-                    "Otherwise, say \"NO CONFLICT\" in capital letters and nothing else. If you do not" +
-                    "know the answer, say \"UNSURE\" in capital letters and nothing else.";
+            inputPromptTemplate = "My software is licensed under {myLicense}. Determine for each of the following licenses whether it conflicts with my license:\n" +
+                    "{otherLicenses}\nAnswer with a JSON array holding one object per license, with the fields \"license\" (as listed), " +
+                    "\"conflict\" (true or false), \"reason\" (a one-sentence description of the conflict) and \"category\" " +
+                    "(\"A\" if you can safely address the conflict, \"B\" if it requires analysis from a legal expert), and nothing else.";
         }
 
-        ChatbotSessionLlamaPython conflictChatbot = new ChatbotSessionLlamaPython( //TODO split up classes for different models
-                "localhost",
-                "gpt-4o", //TODO ideally we can configure this around the user's settings
-                systemPrompt);
+        ChatbotSessionLlamaPython analysisChatbot = helperSession(ChatbotSessionRegistry.Purpose.ANALYSIS, systemPrompt);
+
+        Map<License, String> fixableConflicts = new LinkedHashMap<>(); //The set of conflicts that the model thinks that it can address/make recommendations for
+        Map<License, String> nonfixableConflicts = new LinkedHashMap<>(); //The set of conflicts that the model thinks it's best to send to a legal expert
+        Map<License, String> unknownConflicts = new LinkedHashMap<>();
 
-        for (Map.Entry<License, String> entry : potentialConflicts.entrySet())
+        //Licenses compare by type, so ask once per type, in a stable order
+        List<License> toAsk = new ArrayList<>();
+        ConflictExplanationCatalog catalog = MATRIX_FAST_PATH ? ConflictExplanationCatalog.getInstance() : null;
+        for (License license : sortedLicenses(potentialConflicts.keySet()))
         {
-            if (!(checkedLicenses.contains(entry.getKey().getType())))
+            if (!(checkedLicenses.add(license.getType())))
             {
-                checkedLicenses.add(entry.getKey().getType());
-                String reason;
-                try
-                {
-                    switch (entry.getValue())
+                continue;
+            }
+            switch (potentialConflicts.get(license))
+            {
+                case "Yes":
+                case "Same":
+                    break; //Don't add confirmed compatible licenses to our list of conflicts
+                case "No":
+                    //Clear-cut conflicts between license families get a canned explanation instead of an LLM call
+                    ConflictExplanationCatalog.Explanation explanation = catalog == null ? null
+                            : catalog.explain(ownLicense.getType(), license.getType(), potentialConflicts.get(license));
+                    if (explanation != null)
                     {
-                        case "Yes":
-                        case "Same":
-                            break; //Don't add confirmed compatible licenses to our list of conflicts
-                        case "No":
-                        case "Dep.":
-                        case "Check dependency":
-                        case "?":
-                            String inputPrompt = inputPromptTemplate.replace("{myLicense}", ownLicense.getType()).replace("{otherLicense}", entry.getKey().getType());
-                            reason = conflictChatbot.submitPrompt(inputPrompt);
-                            conflicts.put(entry.getKey(), reason);
-                            break;
-                        default:
-                            reason = "Unknown license relationship.";
-                            conflicts.put(entry.getKey(), reason);
-                            break;
+                        if (ConflictFinding.FIXABLE.equals(explanation.category())) fixableConflicts.put(license, explanation.reason());
+                        else nonfixableConflicts.put(license, explanation.reason());
+                        break;
                     }
-                }
-                catch (Exception e)
-                {
-                    reason = "Chatbot failed to analyze license conflicts.";
-                    conflicts.put(entry.getKey(), reason);
-                }
+                    toAsk.add(license);
+                    break;
+                case "Dep.":
+                case "Check dependency":
+                case "?":
+                    toAsk.add(license);
+                    break;
+                default:
+                    unknownConflicts.put(license, UNKNOWN_RELATIONSHIP);
+                    break;
             }
         }
-        return conflicts;
-    }
-
-    public ArrayList<Map<License, String>> categorizeConflicts(License ownLicense, Map<License, String> allConflicts)
-    {
 
-        //Read in the system prompt for the helper instance
-        String systemPrompt;
-        try {
-            InputStream is = LicensingController.class.getClassLoader().getResourceAsStream("prompts/system-categorization.txt");
-            systemPrompt = IOUtils.toString(is, "UTF-8");
-        }
-        catch (Exception e)
+        //Findings for license pairs seen before (in any project) come from the cache
+        ConflictAnalysisCache cache = ConflictAnalysisCache.getInstance();
+        String promptHash = ConflictAnalysisCache.promptHash(systemPrompt, inputPromptTemplate);
+        Map<License, ConflictFinding> findings = new HashMap<>();
+        List<License> uncached = new ArrayList<>();
+        for (License license : toAsk)
         {
-            //Unable to load system prompt
-            systemPrompt = "You are a component in an IDE designed to analyze software license conflicts and determine whether yourself, an LLM, can safely and reasonably make recommendations to address the conflict, or if the conflict should not be " +
-                    "answered by an LLM and instead requires the counsel of a legal expert.";
+            String cached = cache.get(analysisKey(ownLicense, license, promptHash));
+            ConflictFinding finding = null;
+            try {
+                finding = cached == null ? null : ConflictFinding.fromJson(JsonParser.parseString(cached));
+            } catch (JsonParseException e) {
+                LOG.info("Ignoring unreadable cached conflict analysis for {}", license.getType());
+            }
+            if (finding != null) findings.put(license, finding);
+            else uncached.add(license);
         }
 
-        //Read in the template to be used when prompting the helper instance
-        String inputPromptTemplate;
-        try {
-            InputStream is = LicensingController.class.getClassLoader().getResourceAsStream("prompts/categorization-input-template.txt");
-            inputPromptTemplate = IOUtils.toString(is, "UTF-8");
+        //The rest is asked in groups, and a group's answer only counts where it matches the schema
+        final String template = inputPromptTemplate;
+        Function<List<License>, String> promptOf = group -> template.replace("{myLicense}", ownLicense.getType())
+                .replace("{otherLicenses}", String.join("\n", group.stream().map(License::getType).toList()));
+        List<License> unanswered = askForFindings(uncached, promptOf, analysisChatbot, findings);
+        if (!unanswered.isEmpty())
+        {
+            //Retry once for whatever came back malformed or missing, pointing out what is expected
+            LOG.info("Retrying conflict analysis for {} licenses with unusable answers", unanswered.size());
+            unanswered = askForFindings(unanswered, group -> promptOf.apply(group) + ANALYSIS_RETRY_NOTE, analysisChatbot, findings);
         }
-        catch (Exception e)
+        for (License license : uncached)
         {
-            //Unable to load input prompt template
-            inputPromptTemplate = "My software is licensed under {myLicense} " +
-                    " and conflicts with the license {otherLicense}" +
-                    " for the following reason: {reason}. " +
-                    " If this is a conflict that you can safely address with what you know now, respond \"A\" and nothing else. " +
-                    " If this is a conflict that would require analysis from a legal expert, respond \"B\" and nothing else.";
+            if (findings.containsKey(license)) cache.put(analysisKey(ownLicense, license, promptHash), findings.get(license).toJson().toString());
         }
-
-        ChatbotSessionLlamaPython categorizationChatbot = new ChatbotSessionLlamaPython( //TODO split up classes for different models
-                "localhost",
-                "gpt-4o", //TODO ideally we can configure this around the user's settings
-                systemPrompt);
+        cache.save();
 
         ArrayList<Map<License, String>> categorizedConflicts = new ArrayList<>();
-
-        Map<License, String> fixableConflicts = new HashMap<>(); //The set of conflicts that the model thinks that it can address/make recommendations for
-        Map<License, String> nonfixableConflicts = new HashMap<>(); //The set of conflicts that the model thinks it's best to send to a legal expert
-        Map<License, String> unknownConflicts = new HashMap<>();
-
-        for (Map.Entry<License, String> entry : allConflicts.entrySet())
+        for (License license : toAsk)
         {
-            try {
-                String inputPrompt = inputPromptTemplate.replace("{myLicense}", ownLicense.getType()).replace("{otherLicense}", entry.getKey().getType()).replace("{reason}", entry.getValue());
-                String cat = categorizationChatbot.submitPrompt(inputPrompt);
-                if (cat.equals("A")) {
-                    fixableConflicts.put(entry.getKey(), entry.getValue());
-                } else if (cat.equals("B")) {
-                    nonfixableConflicts.put(entry.getKey(), entry.getValue());
-                }
-                else {
-                    throw new RuntimeException("unknown conflict category: " + cat);
-                }
-            }
-            catch (Exception e) //The chatbot either failed or gave some invalid output
-            {
-                unknownConflicts.put(entry.getKey(), entry.getValue());
+            ConflictFinding finding = findings.get(license);
+            if (finding == null) { //The chatbot either failed or kept giving invalid output
+                LOG.info("No valid conflict analysis for {}", license.getType());
+                unknownConflicts.put(license, REASON_FAILED);
+            } else if (!finding.conflict()) {
+                LOG.info("Chatbot found no conflict with {}", license.getType());
+            } else if (ConflictFinding.FIXABLE.equals(finding.category())) {
+                fixableConflicts.put(license, finding.reason());
+            } else {
+                nonfixableConflicts.put(license, finding.reason());
             }
         }
 
@@ -446,7 +541,58 @@ public final class MavenDependencyServiceImpl implements MavenDependencyService,
         return categorizedConflicts;
     }
 
+    /**
+     * Sends one prompt per group of up to {@code ANALYSIS_GROUP_SIZE} licenses and adds the valid findings.
+     * @return the licenses that got no valid finding
+     */
+    private static List<License> askForFindings(List<License> licenses, Function<List<License>, String> promptOf,
+                                                ChatbotSessionLlamaPython chatbot, Map<License, ConflictFinding> findings)
+    {
+        List<List<License>> groups = new ArrayList<>();
+        for (int i = 0; i < licenses.size(); i += ANALYSIS_GROUP_SIZE)
+        {
+            groups.add(licenses.subList(i, Math.min(i + ANALYSIS_GROUP_SIZE, licenses.size())));
+        }
+        Map<List<License>, String> answers = ParallelLlmRequests.runBatched(groups, promptOf, chatbot);
+
+        List<License> unanswered = new ArrayList<>();
+        for (Map.Entry<List<License>, String> answer : answers.entrySet())
+        {
+            Map<String, ConflictFinding> parsed = ConflictFinding.parse(answer.getValue(),
+                    answer.getKey().stream().map(License::getType).toList());
+            for (License license : answer.getKey())
+            {
+                ConflictFinding finding = parsed.get(license.getType());
+                if (finding != null) findings.put(license, finding);
+                else unanswered.add(license);
+            }
+        }
+        return unanswered;
+    }
+
+    private static String analysisKey(License ownLicense, License otherLicense, String promptHash)
+    {
+        return ConflictAnalysisCache.key(ownLicense.getType(), otherLicense.getType(), HELPER_MODEL, promptHash);
+    }
+
+    private static List<License> sortedLicenses(Collection<License> licenses)
+    {
+        List<License> sorted = new ArrayList<>(licenses);
+        sorted.sort(Comparator.comparing(License::getType, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(License::getUrl, Comparator.nullsFirst(Comparator.naturalOrder())));
+        return sorted;
+    }
+
     public File[] genSbom(String pomPath) {
+        String basePath = project.getBasePath();
+        return genSbom(pomPath, basePath == null ? null : PomFingerprint.compute(Paths.get(basePath)), null);
+    }
+
+    /**
+     * @param fingerprint fingerprint of the poms taken before generation, stored once the SBOM was written
+     * @param indicator cancels (and kills) the Maven run when cancelled, may be null
+     */
+    private File[] genSbom(String pomPath, String fingerprint, ProgressIndicator indicator) {
         // This method is called to analyze a dependency and return its details.
         // It should be called when a new dependency is added to the pom.xml file.
         String basePath = project.getBasePath();
@@ -481,9 +627,10 @@ public final class MavenDependencyServiceImpl implements MavenDependencyService,
                 prevSbomFile = null; // No previous SBOM to compare against
             }
             // Generate new SBOM
-            newSbomFile = CycloneDxMavenInvoker.INSTANCE.generateSbom(new File(basePath), outputDir, new File(pomPath));
+            newSbomFile = CycloneDxMavenInvoker.INSTANCE.generateSbom(new File(basePath), outputDir, new File(pomPath), indicator);
             System.out.println("New SBOM generated to: " + newSbomFile.getAbsolutePath());
             LOG.info("New SBOM generated to: {}", newSbomFile.getAbsolutePath());
+            PomFingerprint.store(licenseToolDir(), fingerprint);
 
             // Refresh the VFS to ensure listeners receive the change events
             try {
@@ -501,6 +648,9 @@ public final class MavenDependencyServiceImpl implements MavenDependencyService,
                 System.out.println("Error refreshing VFS: " + e.getMessage());
                 LOG.error("Error refreshing VFS: {}", e.getMessage());
             }
+        }catch (ProcessCanceledException e){
+            LOG.info("SBOM generation cancelled.");
+            throw e;
         }catch (Exception e){
             System.out.println( "Error analyzing dependencies: " + e.getMessage() + " Dependency Analysis Error");
             System.out.println("Stack trace: " + Arrays.toString(e.getStackTrace()));
@@ -510,9 +660,89 @@ public final class MavenDependencyServiceImpl implements MavenDependencyService,
         return new File[] {prevSbomFile, newSbomFile};
     }
 
+    /**
+     * The components as the IDE sees them, if an {@link IdeSbomProducer} is installed and its model is usable.
+     */
+    private @Nullable List<SbomComponent> componentsFromIdeModel(ProgressIndicator indicator, @Nullable String fingerprint) {
+        IdeSbomProducer producer = project.getService(IdeSbomProducer.class);
+        if (producer == null) {
+            LOG.info("No IDE SBOM producer available, generating the SBOM with CycloneDX.");
+            return null;
+        }
+        try {
+            return producer.collect(indicator, fingerprint);
+        } catch (ProcessCanceledException e) {
+            throw e;
+        } catch (Exception e) {
+            LOG.warn("Reading the IDE dependency model failed: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Diffs components that did not come from a single aggregate BOM (the IDE model, or merged module fragments)
+     * against the last known state, which is the snapshot of the previous run or else the last aggregate BOM.
+     * The snapshot then takes the new state; bom.xml no longer describes the project and is removed, so a later
+     * aggregate run compares with the snapshot.
+     */
+    private JsonObject changesFromComponents(List<SbomComponent> components, @Nullable String fingerprint) {
+        try {
+            Set<String> prevKeys = null;
+            SbomSnapshot snapshot = SbomSnapshot.read(snapshotPath());
+            File bom = licenseToolDir().resolve("bom.xml").toFile();
+            if (snapshot != null) {
+                prevKeys = keysOf(snapshot.getComponents().values());
+            } else if (bom.exists()) {
+                prevKeys = extractComponentKeys(bom);
+            }
+            SbomSnapshot.write(snapshotPath(), SbomSnapshot.hash(components), components);
+            Files.deleteIfExists(bom.toPath());
+            PomFingerprint.store(licenseToolDir(), fingerprint);
+
+            if (prevKeys == null) {
+                LOG.info("No previous SBOM found, analyzing the current components only.");
+                prevKeys = Set.of();
+            }
+            return changesJson(diffComponents(prevKeys, components));
+        } catch (Exception e) {
+            LOG.error("Error analyzing dependencies: {}", e.getMessage());
+            return new JsonObject();
+        }
+    }
+
+    private static SbomDiffResult diffComponents(Set<String> prevKeys, Collection<SbomComponent> components) {
+        Set<String> currKeys = keysOf(components);
+        Set<String> added = new HashSet<>(currKeys);
+        added.removeAll(prevKeys);
+        Set<String> removed = new HashSet<>(prevKeys);
+        removed.removeAll(currKeys);
+        LOG.info("{} components added, {} removed.", added.size(), removed.size());
+        return new SbomDiffResult(added, removed);
+    }
+
+    // The addedComponents/removedComponents form of getChanges, or an empty object if nothing changed
+    private static JsonObject changesJson(SbomDiffResult diff) {
+        JsonObject diffResults = new JsonObject();
+        if (diff.added().isEmpty() && diff.removed().isEmpty()) return diffResults;
+        JsonArray addedArray = new JsonArray();
+        for (Dependency dep : parseSetToList(diff.added())) {
+            addedArray.add(dep.toJson());
+        }
+        JsonArray removedArray = new JsonArray();
+        for (Dependency dep : parseSetToList(diff.removed())) {
+            removedArray.add(dep.toJson());
+        }
+        diffResults.add("addedComponents", addedArray);
+        diffResults.add("removedComponents", removedArray);
+        return diffResults;
+    }
+
     public SbomDiffResult diffSbomXml(File prevSbom, File currSbom) throws Exception {
-        Set<String> prevComponents = extractComponentKeys(prevSbom);
-        Set<String> currComponents = extractComponentKeys(currSbom);
+        Set<String> prevComponents = previousComponentKeys(prevSbom);
+        List<SbomComponent> currList = SbomReader.readComponents(currSbom);
+        Set<String> currComponents = keysOf(currList);
+        // The current BOM becomes the previous side of the next diff
+        saveSnapshot(currSbom, currList);
 
         Set<String> added = new HashSet<>(currComponents);
         added.removeAll(prevComponents);
@@ -540,52 +770,54 @@ public final class MavenDependencyServiceImpl implements MavenDependencyService,
         return new SbomDiffResult(added, removed);
     }
 
-    private Set<String> extractComponentKeys(File sbomFile) throws Exception {
+    /**
+     * Component keys of the previous SBOM, taken from the binary snapshot when it was built from the same
+     * content as bom-prev.xml, and parsed from the XML otherwise.
+     */
+    private Set<String> previousComponentKeys(File prevSbom) throws Exception {
+        SbomSnapshot snapshot = SbomSnapshot.read(snapshotPath());
+        if (snapshot != null && snapshot.matches(SbomSnapshot.hash(prevSbom))) {
+            LOG.info("Previous SBOM loaded from snapshot ({} components).", snapshot.getComponents().size());
+            return keysOf(snapshot.getComponents().values());
+        }
+        LOG.info("No matching SBOM snapshot, parsing {}", prevSbom.getName());
+        return extractComponentKeys(prevSbom);
+    }
+
+    private void saveSnapshot(File sbomFile, List<SbomComponent> components) {
+        try {
+            SbomSnapshot.write(snapshotPath(), SbomSnapshot.hash(sbomFile), components);
+        } catch (IOException e) {
+            // Not fatal: the next diff falls back to parsing bom-prev.xml
+            LOG.warn("Failed to write SBOM snapshot: {}", e.getMessage());
+        }
+    }
+
+    private Path snapshotPath() {
+        return SbomSnapshot.pathIn(licenseToolDir());
+    }
+
+    private Path licenseToolDir() {
+        return Paths.get(project.getBasePath(), ".license-tool");
+    }
+
+    private static Set<String> keysOf(Collection<SbomComponent> components) {
         Set<String> keys = new HashSet<>();
-        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-        Document doc = dBuilder.parse(sbomFile);
-        NodeList components = doc.getElementsByTagName("component");
-        for (int i = 0; i < components.getLength(); i++) {
-            Element comp = (Element) components.item(i);
-            String group = getTagValue(comp, "group");
-            String name = getTagValue(comp, "name");
-            String version = getTagValue(comp, "version");
-            String license = getTagValue(comp, "license");
-            System.out.println("group: " + group);
-            System.out.println("name: " + name);
-            System.out.println("version: " + version);
-            System.out.println("License: " + license.trim());
-            LOG.info("group: {}", group);
-            LOG.info("name: {}", name);
-            LOG.info("version: {}", version);
-            LOG.info("License: {}", license.trim());
-            keys.add(group + ":" + name + ":" + version + (license.isEmpty() ? "" : ":" + license));
+        for (SbomComponent component : components) {
+            keys.add(component.key());
         }
         return keys;
     }
 
-    private String getTagValue(Element element, String tag) {
-        // This method retrieves the text content of a specific tag from an XML element.
-        // If the tag is "license", it retrieves all license nodes and concatenates their text content.
-        if ("license".equals(tag)) {
-            NodeList licenseNodes = element.getElementsByTagName("license");
-            StringBuilder licenses = new StringBuilder();
-            for (int i = 0; i < licenseNodes.getLength(); i++) {
-                String license = licenseNodes.item(i).getTextContent();
-                if (license != null && !license.trim().isEmpty()) {
-                    if (!licenses.isEmpty()) licenses.append(",");
-                    licenses.append(license.trim());
-                }
-            }
-            return licenses.toString();
-        } else {
-            NodeList nl = element.getElementsByTagName(tag);
-            if (nl.getLength() > 0 && nl.item(0).getTextContent() != null) {
-                return nl.item(0).getTextContent();
-            }
-            return "";
-        }
+    private Set<String> extractComponentKeys(File sbomFile) throws Exception {
+        // Single streaming pass over the BOM; only top-level components and their sub-components are reported
+        Set<String> keys = new HashSet<>();
+        SbomReader.read(sbomFile, component -> {
+            LOG.debug("Component: {}:{}:{} {}", component.group(), component.name(), component.version(), component.licenses());
+            keys.add(component.key());
+        });
+        LOG.info("Read {} components from {}", keys.size(), sbomFile.getName());
+        return keys;
     }
 
     // This class represents the result of the SBOM diff operation.
@@ -0,0 +1,37 @@
+package com.example.my_plugin;
+
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.idea.maven.project.MavenImportListener;
+import org.jetbrains.idea.maven.project.MavenProject;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Tells the {@link MavenModelSbomProducer} which poms the IDE's Maven model was imported from. Registered from
+ * license-tool-maven.xml, so it sees every import, including the ones before the first SBOM run.
+ */
+public class MavenImportTracker implements MavenImportListener
+{
+    private final Project project;
+
+    public MavenImportTracker(Project project) {
+        this.project = project;
+    }
+
+    @Override
+    public void importStarted() {
+        if (project.getService(IdeSbomProducer.class) instanceof MavenModelSbomProducer producer) {
+            producer.importStarted();
+        }
+    }
+
+    @Override
+    public void importFinished(@NotNull Collection<MavenProject> importedProjects, @NotNull List<@NotNull Module> newModules) {
+        if (project.getService(IdeSbomProducer.class) instanceof MavenModelSbomProducer producer) {
+            producer.importFinished();
+        }
+    }
+}
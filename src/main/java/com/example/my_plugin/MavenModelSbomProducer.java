@@ -0,0 +1,120 @@
+package com.example.my_plugin;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.idea.maven.model.MavenArtifact;
+import org.jetbrains.idea.maven.model.MavenId;
+import org.jetbrains.idea.maven.project.MavenProject;
+import org.jetbrains.idea.maven.project.MavenProjectsManager;
+import org.slf4j.Logger;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * {@link IdeSbomProducer} backed by the Maven projects the IDE has imported: every resolved dependency of every
+ * reactor project outside the test scope (what makeAggregateBom reports by default), with licenses from the
+ * local repository POMs through {@link PomLicenses}. Registered from license-tool-maven.xml.
+ *
+ * The IDE re-imports a pom on its own schedule, so the model can lag behind a pom that was just saved, and a
+ * change through a property, dependencyManagement, an imported BOM or a parent pom is invisible in the model
+ * until then. {@link MavenImportTracker} therefore records the {@link PomFingerprint} of the poms each import
+ * started from, and the model is only used when the poms of the run are the ones it was imported from;
+ * otherwise the CycloneDX run takes over.
+ */
+public final class MavenModelSbomProducer implements IdeSbomProducer
+{
+    private static final Logger LOG = LogInitializer.getLogger(MavenModelSbomProducer.class);
+    private static final String SCOPE_TEST = "test";
+
+    private final Project project;
+    // Fingerprint of the poms as the running import read them, and as the last finished import read them. Reading
+    // every pom is too slow for the import listener, so the fingerprint is computed on a pooled thread right away.
+    private volatile @Nullable Future<String> importingFingerprint;
+    private volatile @Nullable Future<String> importedFingerprint;
+
+    public MavenModelSbomProducer(Project project) {
+        this.project = project;
+    }
+
+    // The model is in flux until the import finishes
+    void importStarted() {
+        String basePath = project.getBasePath();
+        importedFingerprint = null;
+        importingFingerprint = basePath == null ? null
+                : ApplicationManager.getApplication().executeOnPooledThread(() -> PomFingerprint.compute(Paths.get(basePath)));
+    }
+
+    void importFinished() {
+        importedFingerprint = importingFingerprint;
+        importingFingerprint = null;
+    }
+
+    @Override
+    public @Nullable List<SbomComponent> collect(ProgressIndicator indicator, @Nullable String fingerprint) {
+        String imported = fingerprintOf(importedFingerprint);
+        if (fingerprint == null || !fingerprint.equals(imported)) {
+            LOG.info("Maven model is behind the poms (imported from {}, poms at {}).", imported, fingerprint);
+            return null;
+        }
+        MavenProjectsManager manager = MavenProjectsManager.getInstance(project);
+        List<MavenProject> mavenProjects = manager.isMavenizedProject() ? manager.getProjects() : List.of();
+        if (mavenProjects.isEmpty()) {
+            LOG.info("Project is not imported as a Maven project, no IDE model to build the SBOM from.");
+            return null;
+        }
+
+        // The reactor projects themselves are the project's own code, not dependencies
+        Set<String> modules = new HashSet<>();
+        for (MavenProject mavenProject : mavenProjects) {
+            MavenId id = mavenProject.getMavenId();
+            modules.add(id.getGroupId() + ":" + id.getArtifactId());
+        }
+
+        Map<String, SbomComponent> components = new LinkedHashMap<>();
+        for (MavenProject mavenProject : mavenProjects) {
+            indicator.checkCanceled();
+            for (MavenArtifact artifact : mavenProject.getDependencies()) {
+                if (SCOPE_TEST.equals(artifact.getScope()) || modules.contains(artifact.getGroupId() + ":" + artifact.getArtifactId())) {
+                    continue;
+                }
+                if (!artifact.isResolved()) {
+                    LOG.info("{} is not resolved in the IDE model yet.", artifact.getMavenId());
+                    return null;
+                }
+                String purl = "pkg:maven/" + artifact.getGroupId() + "/" + artifact.getArtifactId() + "@" + artifact.getVersion()
+                        + "?type=" + artifact.getType();
+                if (components.containsKey(purl)) continue;
+                Path repository = PomLicenses.repositoryOf(artifact.getFile().toPath(), artifact.getGroupId());
+                List<License> licenses = repository == null ? List.of()
+                        : PomLicenses.of(repository, artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion());
+                components.put(purl, new SbomComponent(artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion(), purl, licenses));
+            }
+        }
+        LOG.info("Collected {} components from the IDE Maven model.", components.size());
+        return new ArrayList<>(components.values());
+    }
+
+    private static @Nullable String fingerprintOf(@Nullable Future<String> fingerprint) {
+        if (fingerprint == null) return null;
+        try {
+            return fingerprint.get();
+        } catch (ExecutionException e) {
+            LOG.warn("Could not fingerprint the imported poms: {}", e.getCause().toString());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.my_plugin;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Per-module SBOM fragments of a multi-module reactor, kept in .license-tool/modules/ with the fingerprint of
+ * every pom they were generated from (see {@link PomFingerprint#computePerPom}). A run regenerates only the
+ * modules whose pom changed, together with the reactor modules depending on them, and merges all fragments into
+ * the aggregate component list in memory.
+ *
+ * Changes to an aggregator pom (root or any pom listing modules) can affect every module, so they regenerate
+ * all fragments, as does a run without usable fragments. Set {@code licenseTool.sbom.incremental=false} to
+ * always use the single aggregate BOM instead.
+ */
+final class ModuleSboms
+{
+    private static final Logger LOG = LogInitializer.getLogger(ModuleSboms.class);
+
+    static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("licenseTool.sbom.incremental", "true"));
+    static final String DIR_NAME = "modules";
+    private static final String INDEX_FILE = "index.json";
+    private static final String ROOT_POM = "pom.xml";
+
+    /**
+     * Generates the BOMs of the given modules (directories relative to the reactor, all modules when null) and
+     * their reactor dependents, each in the build directory of its module.
+     */
+    interface Generator {
+        List<File> generate(File reactorDir, @Nullable List<String> modules, ProgressIndicator indicator);
+    }
+
+    private final Path baseDir;
+    private final Path dir;
+    private final Generator generator;
+
+    ModuleSboms(Path baseDir, Path licenseToolDir) {
+        this(baseDir, licenseToolDir, CycloneDxMavenInvoker.INSTANCE::generateModuleBoms);
+    }
+
+    ModuleSboms(Path baseDir, Path licenseToolDir, Generator generator) {
+        this.baseDir = baseDir;
+        this.dir = licenseToolDir.resolve(DIR_NAME);
+        this.generator = generator;
+    }
+
+    // A reactor is a base directory whose pom lists modules
+    private static boolean isReactor(@Nullable Map<String, String> fingerprints) {
+        return fingerprints != null && fingerprints.getOrDefault(ROOT_POM, "").startsWith("*");
+    }
+
+    /**
+     * Brings the fragments up to date with the poms on disk.
+     * @return the components of all modules, or null if the project is no reactor or the fragments could not be
+     * generated
+     */
+    @Nullable List<SbomComponent> update(ProgressIndicator indicator) {
+        Map<String, String> fingerprints = PomFingerprint.computePerPom(baseDir);
+        if (!isReactor(fingerprints)) return null;
+
+        Map<String, String> stored = readIndex();
+        List<String> changedModules = new ArrayList<>();
+        boolean full = stored.isEmpty();
+        for (Map.Entry<String, String> pom : fingerprints.entrySet()) {
+            if (pom.getValue().equals(stored.get(pom.getKey()))) continue;
+            if (pom.getValue().startsWith("*") || stored.getOrDefault(pom.getKey(), "").startsWith("*")) full = true;
+            changedModules.add(moduleOf(pom.getKey()));
+        }
+
+        try {
+            if (full) {
+                LOG.info("Regenerating all module SBOMs.");
+                replaceAll(generator.generate(baseDir.toFile(), null, indicator));
+            } else if (!changedModules.isEmpty()) {
+                LOG.info("Regenerating module SBOMs for {} and their reactor dependents.", changedModules);
+                try {
+                    store(generator.generate(baseDir.toFile(), changedModules, indicator));
+                } catch (RuntimeException e) {
+                    if (e instanceof ProcessCanceledException) throw e;
+                    // e.g. a changed pom that is not part of the reactor, which -pl rejects
+                    LOG.info("Partial module SBOM generation failed ({}), regenerating all modules.", e.getMessage());
+                    replaceAll(generator.generate(baseDir.toFile(), null, indicator));
+                }
+            }
+            // Fragments of modules whose pom is gone
+            for (String pom : stored.keySet()) {
+                if (!fingerprints.containsKey(pom)) Files.deleteIfExists(fragmentPath(moduleOf(pom)));
+            }
+            writeIndex(fingerprints);
+            return merge();
+        } catch (ProcessCanceledException e) {
+            throw e;
+        } catch (Exception e) {
+            LOG.warn("Module SBOM generation failed: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    // Module directory of a pom relative to the base directory, "." for the root pom
+    private static String moduleOf(String pomPath) {
+        int slash = pomPath.lastIndexOf('/');
+        return slash < 0 ? "." : pomPath.substring(0, slash);
+    }
+
+    private Path fragmentPath(String module) {
+        return dir.resolve(URLEncoder.encode(module, StandardCharsets.UTF_8) + ".xml");
+    }
+
+    private void replaceAll(List<File> boms) throws IOException {
+        if (Files.isDirectory(dir)) {
+            try (Stream<Path> fragments = Files.list(dir)) {
+                for (Path fragment : fragments.filter(p -> p.toString().endsWith(".xml")).toList()) {
+                    Files.delete(fragment);
+                }
+            }
+        }
+        store(boms);
+    }
+
+    // Each BOM sits in the build directory of its module; the module is the closest directory with a pom
+    private void store(List<File> boms) throws IOException {
+        Files.createDirectories(dir);
+        for (File bom : boms) {
+            Path moduleDir = bom.toPath().toAbsolutePath().getParent();
+            while (moduleDir != null && !Files.isRegularFile(moduleDir.resolve(ROOT_POM))) moduleDir = moduleDir.getParent();
+            if (moduleDir == null || !moduleDir.startsWith(baseDir.toAbsolutePath())) {
+                LOG.warn("No module found for BOM {}", bom);
+                continue;
+            }
+            String module = baseDir.toAbsolutePath().relativize(moduleDir).toString().replace('\\', '/');
+            Files.copy(bom.toPath(), fragmentPath(module.isEmpty() ? "." : module), StandardCopyOption.REPLACE_EXISTING);
+        }
+        LOG.info("Stored {} module SBOMs in {}", boms.size(), dir);
+    }
+
+    // Union of all fragments; a component used by several modules is listed once
+    private List<SbomComponent> merge() throws IOException {
+        Map<String, SbomComponent> components = new LinkedHashMap<>();
+        if (!Files.isDirectory(dir)) return new ArrayList<>();
+        try (Stream<Path> fragments = Files.list(dir)) {
+            for (Path fragment : fragments.filter(p -> p.toString().endsWith(".xml")).sorted().toList()) {
+                SbomReader.read(fragment.toFile(), c -> components.putIfAbsent(
+                        c.purl() != null && !c.purl().isEmpty() ? c.purl() : c.key(), c));
+            }
+        }
+        return new ArrayList<>(components.values());
+    }
+
+    private Map<String, String> readIndex() {
+        Path index = dir.resolve(INDEX_FILE);
+        Map<String, String> stored = new HashMap<>();
+        if (!Files.isRegularFile(index)) return stored;
+        try (Reader reader = Files.newBufferedReader(index, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, JsonElement> e : JsonParser.parseReader(reader).getAsJsonObject().entrySet()) {
+                stored.put(e.getKey(), e.getValue().getAsString());
+            }
+        } catch (Exception e) {
+            LOG.warn("Unreadable module SBOM index {}: {}", index, e.toString());
+            stored.clear();
+        }
+        return stored;
+    }
+
+    private void writeIndex(Map<String, String> fingerprints) throws IOException {
+        JsonObject index = new JsonObject();
+        fingerprints.forEach(index::addProperty);
+        Files.createDirectories(dir);
+        Path tmp = dir.resolve(INDEX_FILE + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            writer.write(index.toString());
+        }
+        Files.move(tmp, dir.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.my_plugin;
+
+import chatbot.ChatbotSession;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Fans independent LLM requests out over virtual threads, at most {@code licenseTool.llm.parallelism}
+ * (default 4) at a time, so a batch takes about as long as its slowest request instead of the sum of all.
+ *
+ * The caller's progress indicator stays in charge: cancelling it interrupts the outstanding requests
+ * (which abandons them on the bridge) and the call ends with a {@link ProcessCanceledException}.
+ *
+ * Independent prompts to one session are better sent with {@link #runBatched}, which packs them into batch
+ * requests of up to {@code licenseTool.llm.batchSize} (default 32) prompts each.
+ */
+public final class ParallelLlmRequests
+{
+    private static final Logger LOG = LogInitializer.getLogger(ParallelLlmRequests.class);
+
+    static final int PARALLELISM = Math.max(1, Integer.getInteger("licenseTool.llm.parallelism", 4));
+    static final int BATCH_SIZE = Math.max(1, Integer.getInteger("licenseTool.llm.batchSize", 32));
+
+    private ParallelLlmRequests() {}
+
+    /**
+     * Runs request for every key concurrently. The request is expected to handle its own failures.
+     * @return the results, in the iteration order of keys regardless of completion order
+     */
+    public static <K, V> Map<K, V> run(Collection<K> keys, Function<K, V> request) {
+        Map<K, V> results = new LinkedHashMap<>();
+        if (keys.isEmpty()) return results;
+
+        ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Semaphore permits = new Semaphore(PARALLELISM);
+            Map<K, Future<V>> futures = new LinkedHashMap<>();
+            for (K key : keys) {
+                futures.put(key, executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return request.apply(key);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+            for (Map.Entry<K, Future<V>> entry : futures.entrySet()) {
+                results.put(entry.getKey(), await(entry.getValue(), indicator, executor));
+            }
+        }
+        LOG.info("{} LLM requests completed in {} ms (parallelism {})",
+                keys.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), PARALLELISM);
+        return results;
+    }
+
+    /**
+     * Answers the prompt of every key through {@link ChatbotSession#submitPrompts}, one bridge request per
+     * {@code BATCH_SIZE} keys, with the batches themselves running concurrently.
+     * @return the answers in the iteration order of keys; null for keys whose batch failed
+     */
+    public static <K> Map<K, String> runBatched(Collection<K> keys, Function<K, String> promptOf, ChatbotSession session) {
+        List<List<K>> batches = new ArrayList<>();
+        for (K key : keys) {
+            if (batches.isEmpty() || batches.get(batches.size() - 1).size() == BATCH_SIZE) batches.add(new ArrayList<>());
+            batches.get(batches.size() - 1).add(key);
+        }
+        Map<List<K>, List<String>> answers = run(batches, batch -> {
+            try {
+                return session.submitPrompts(batch.stream().map(promptOf).toList());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (Exception e) {
+                LOG.warn("Batch of {} LLM requests failed: {}", batch.size(), e.getMessage());
+                return null;
+            }
+        });
+        Map<K, String> results = new LinkedHashMap<>();
+        for (List<K> batch : batches) {
+            List<String> batchAnswers = answers.get(batch);
+            for (int i = 0; i < batch.size(); i++) {
+                results.put(batch.get(i), batchAnswers == null ? null : batchAnswers.get(i));
+            }
+        }
+        return results;
+    }
+
+    private static <V> V await(Future<V> future, ProgressIndicator indicator, ExecutorService executor) {
+        try {
+            while (true) {
+                try {
+                    return future.get(100, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    if (indicator != null && indicator.isCanceled()) {
+                        executor.shutdownNow();
+                        throw new ProcessCanceledException();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+            throw new ProcessCanceledException();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("LLM request failed", e.getCause());
+        }
+    }
+}
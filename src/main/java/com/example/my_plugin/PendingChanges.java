@@ -0,0 +1,116 @@
+package com.example.my_plugin;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Dependency changes that were detected but not reported yet, kept in .license-tool/pending-changes.json.
+ *
+ * A run saves the new dependency state (fingerprint, snapshot, module index) as soon as it has diffed it, but
+ * reports the changes only at the end of the pipeline. A run cancelled in between (e.g. by a newer pom save)
+ * would otherwise lose its changes, because the next run diffs against the already saved state. The diff is
+ * therefore stored before the state moves on, merged into the changes of every following run, and only
+ * cleared once a run has reported it.
+ */
+final class PendingChanges
+{
+    private static final Logger LOG = LogInitializer.getLogger(PendingChanges.class);
+    static final String FILE_NAME = "pending-changes.json";
+    private static final String ADDED = "addedComponents";
+    private static final String REMOVED = "removedComponents";
+
+    private PendingChanges() {}
+
+    /**
+     * Merges the changes of this run into the unreported ones and stores the result.
+     * @return the changes to report, empty if there are none
+     */
+    static JsonObject carry(Path licenseToolDir, JsonObject changes) {
+        JsonObject pending = read(licenseToolDir);
+        JsonObject merged = pending == null ? changes : merge(pending, changes);
+        if (pending != null) LOG.info("Carrying over dependency changes of an unfinished run.");
+        if (!merged.isEmpty()) write(licenseToolDir, merged);
+        else clear(licenseToolDir);
+        return merged;
+    }
+
+    /**
+     * Called once the changes were reported.
+     */
+    static void clear(Path licenseToolDir) {
+        try {
+            Files.deleteIfExists(licenseToolDir.resolve(FILE_NAME));
+        } catch (IOException e) {
+            LOG.warn("Could not delete {}: {}", FILE_NAME, e.getMessage());
+        }
+    }
+
+    /**
+     * Changes of a run following earlier ones: a component added and then removed again (or the other way round)
+     * did not change in total.
+     */
+    static JsonObject merge(JsonObject earlier, JsonObject later) {
+        Set<JsonElement> added = elements(earlier, ADDED);
+        Set<JsonElement> removed = elements(earlier, REMOVED);
+        for (JsonElement component : elements(later, ADDED)) {
+            if (!removed.remove(component)) added.add(component);
+        }
+        for (JsonElement component : elements(later, REMOVED)) {
+            if (!added.remove(component)) removed.add(component);
+        }
+
+        JsonObject merged = new JsonObject();
+        if (added.isEmpty() && removed.isEmpty()) return merged;
+        merged.add(ADDED, toArray(added));
+        merged.add(REMOVED, toArray(removed));
+        return merged;
+    }
+
+    private static Set<JsonElement> elements(JsonObject changes, String member) {
+        Set<JsonElement> elements = new LinkedHashSet<>();
+        if (changes.has(member) && changes.get(member).isJsonArray()) {
+            changes.getAsJsonArray(member).forEach(elements::add);
+        }
+        return elements;
+    }
+
+    private static JsonArray toArray(Set<JsonElement> elements) {
+        JsonArray array = new JsonArray();
+        elements.forEach(array::add);
+        return array;
+    }
+
+    private static @Nullable JsonObject read(Path licenseToolDir) {
+        Path file = licenseToolDir.resolve(FILE_NAME);
+        if (!Files.isRegularFile(file)) return null;
+        try {
+            return JsonParser.parseString(Files.readString(file, StandardCharsets.UTF_8)).getAsJsonObject();
+        } catch (Exception e) {
+            LOG.warn("Unreadable {}, dropping it: {}", FILE_NAME, e.getMessage());
+            return null;
+        }
+    }
+
+    private static void write(Path licenseToolDir, JsonObject changes) {
+        try {
+            Files.createDirectories(licenseToolDir);
+            Path tmp = licenseToolDir.resolve(FILE_NAME + ".tmp");
+            Files.writeString(tmp, changes.toString(), StandardCharsets.UTF_8);
+            Files.move(tmp, licenseToolDir.resolve(FILE_NAME), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("Could not store pending dependency changes: {}", e.getMessage());
+        }
+    }
+}
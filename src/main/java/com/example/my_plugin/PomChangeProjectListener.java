@@ -37,8 +37,8 @@ public class PomChangeProjectListener extends PsiTreeChangeAdapter implements Bu
                     System.out.println("📦 [pom.xml updated] project: " + project.getName() + ": " + path);
                     // Check if the event is a child addition (i.e., a new dependency)
                     // LicensingController controller = new LicensingController();
-                    System.out.println("Start the pipeline for dependency addition");
-                    LogInitializer.getLogger(PomChangeProjectListener.class).info("Start the pipeline for dependency addition for project: {}", project.getName());
+                    // Bursts of events are debounced and coalesced by the controller into a single analysis run
+                    LogInitializer.getLogger(PomChangeProjectListener.class).info("Requesting dependency analysis for project: {}", project.getName());
                     licensingController.onDependencyChange(project, path);
                 }
             }
@@ -0,0 +1,311 @@
+package com.example.my_plugin;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Hash of the dependency-relevant parts of every pom.xml under a project: coordinates, parent, modules,
+ * dependencies, dependencyManagement, repositories, the properties those sections refer to, and the same
+ * sections inside profiles. Whitespace, comments, descriptions, build/plugin configuration and other
+ * unrelated edits do not change it, so an unchanged fingerprint means a new SBOM would be identical.
+ */
+public final class PomFingerprint
+{
+    private static final Logger LOG = LogInitializer.getLogger(PomFingerprint.class);
+
+    public static final String FILE_NAME = "bom.fingerprint";
+    // Bump when the SBOM invocation or this normalization changes, to invalidate stored fingerprints
+    private static final String SALT = "cyclonedx-maven-plugin:2.9.1/makeAggregateBom/v2";
+
+    private static final List<String> PROJECT_SECTIONS = List.of(
+            "parent", "groupId", "artifactId", "version", "packaging", "modules",
+            "dependencies", "dependencyManagement", "repositories");
+    private static final List<String> PROFILE_SECTIONS = List.of(
+            "id", "activation", "modules", "dependencies", "dependencyManagement", "repositories");
+    private static final Set<String> SKIPPED_DIRS = Set.of(".license-tool", "target", "node_modules");
+    // Usually build output of other tools, so only searched where a reactor module points into them
+    private static final Set<String> OUTPUT_DIRS = Set.of("build", "out");
+    private static final Pattern PROPERTY_REF = Pattern.compile("\\$\\{([^}]+)}");
+
+    private PomFingerprint() {}
+
+    // Normalized dependency-relevant sections per pom (by path relative to the base directory), the poms that
+    // list modules, and every definition of every property (properties are inherited, and a name may be defined
+    // by several poms and profiles): name -> (defining pom and profile -> value)
+    private record Sections(Map<String, String> byPom, Set<String> aggregators,
+                            Map<String, Map<String, String>> properties) {}
+
+    /**
+     * @return the hex fingerprint of all poms under baseDir, or null if it could not be computed
+     */
+    public static @Nullable String compute(Path baseDir) {
+        try {
+            Sections sections = readSections(baseDir);
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, SALT);
+            StringBuilder referencing = new StringBuilder();
+            for (Map.Entry<String, String> e : sections.byPom().entrySet()) {
+                update(digest, e.getKey());
+                update(digest, e.getValue());
+                referencing.append(e.getValue());
+            }
+            updateProperties(digest, referencedProperties(referencing, sections.properties()), sections.properties());
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (Exception e) {
+            LOG.warn("Could not compute pom fingerprint: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Fingerprint of each pom on its own: its dependency-relevant sections plus the properties they refer to,
+     * wherever those are defined. Aggregator poms (the ones listing modules) are marked with a leading "*".
+     * @return the fingerprints by pom path relative to baseDir ("pom.xml", "core/pom.xml", ...), or null if they
+     * could not be computed
+     */
+    public static @Nullable Map<String, String> computePerPom(Path baseDir) {
+        try {
+            Sections sections = readSections(baseDir);
+            Map<String, String> fingerprints = new TreeMap<>();
+            for (Map.Entry<String, String> e : sections.byPom().entrySet()) {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                update(digest, SALT);
+                update(digest, e.getValue());
+                updateProperties(digest, referencedProperties(e.getValue(), sections.properties()), sections.properties());
+                String prefix = sections.aggregators().contains(e.getKey()) ? "*" : "";
+                fingerprints.put(e.getKey(), prefix + HexFormat.of().formatHex(digest.digest()));
+            }
+            return fingerprints;
+        } catch (Exception e) {
+            LOG.warn("Could not compute per-pom fingerprints: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static Sections readSections(Path baseDir) throws Exception {
+        List<Path> poms = findPoms(baseDir);
+        DocumentBuilder builder = newBuilder();
+
+        Map<String, String> sectionsByPom = new TreeMap<>();
+        Set<String> aggregators = new TreeSet<>();
+        Map<String, Map<String, String>> properties = new TreeMap<>();
+        for (Path pom : poms) {
+            Element root = builder.parse(pom.toFile()).getDocumentElement();
+            String rel = baseDir.relativize(pom).toString().replace('\\', '/');
+            StringBuilder sb = new StringBuilder();
+            appendSections(root, PROJECT_SECTIONS, sb);
+            for (Element profile : children(child(root, "profiles"), "profile")) {
+                sb.append("profile{");
+                appendSections(profile, PROFILE_SECTIONS, sb);
+                sb.append('}');
+                String id = child(profile, "id") != null ? child(profile, "id").getTextContent().trim() : "";
+                collectProperties(child(profile, "properties"), rel + "#" + id, properties);
+            }
+            collectProperties(child(root, "properties"), rel, properties);
+            sectionsByPom.put(rel, sb.toString());
+            if (!children(child(root, "modules"), "module").isEmpty()) aggregators.add(rel);
+        }
+        return new Sections(sectionsByPom, aggregators, properties);
+    }
+
+    public static boolean matchesStored(Path licenseToolDir, @Nullable String fingerprint) {
+        if (fingerprint == null) return false;
+        Path file = licenseToolDir.resolve(FILE_NAME);
+        try {
+            return Files.isRegularFile(file) && fingerprint.equals(Files.readString(file, StandardCharsets.UTF_8).trim());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public static void store(Path licenseToolDir, @Nullable String fingerprint) {
+        if (fingerprint == null) return;
+        try {
+            Files.createDirectories(licenseToolDir);
+            Files.writeString(licenseToolDir.resolve(FILE_NAME), fingerprint, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            LOG.warn("Could not store pom fingerprint: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * All pom.xml files under baseDir. Directories named like common build output (build/, out/) are only searched
+     * below a directory some found pom lists as a module, since "build" is also a valid module name.
+     */
+    static List<Path> findPoms(Path baseDir) throws Exception {
+        List<Path> poms = new ArrayList<>();
+        List<Path> outputDirs = new ArrayList<>();
+        Set<Path> walked = new TreeSet<>();
+        DocumentBuilder builder = newBuilder();
+        List<Path> toWalk = new ArrayList<>(List.of(baseDir.normalize()));
+        while (!toWalk.isEmpty()) {
+            for (Path start : toWalk) {
+                walked.add(start);
+                walk(start, poms, outputDirs);
+            }
+            toWalk.clear();
+            for (Path pom : poms) {
+                Element root = builder.parse(pom.toFile()).getDocumentElement();
+                List<Element> modules = new ArrayList<>(children(child(root, "modules"), "module"));
+                for (Element profile : children(child(root, "profiles"), "profile")) {
+                    modules.addAll(children(child(profile, "modules"), "module"));
+                }
+                for (Element module : modules) {
+                    Path moduleDir = pom.getParent().resolve(module.getTextContent().trim()).normalize();
+                    // <module> may name the pom file itself
+                    if (moduleDir.toString().endsWith(".xml")) moduleDir = moduleDir.getParent();
+                    if (!walked.contains(moduleDir) && !toWalk.contains(moduleDir)
+                            && outputDirs.stream().anyMatch(moduleDir::startsWith)) {
+                        toWalk.add(moduleDir);
+                    }
+                }
+            }
+        }
+        return poms;
+    }
+
+    // Adds the poms under start, and the output directories it did not descend into
+    private static void walk(Path start, List<Path> poms, List<Path> outputDirs) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (dir.equals(start)) return FileVisitResult.CONTINUE;
+                String name = dir.getFileName() != null ? dir.getFileName().toString() : "";
+                if (name.startsWith(".") || SKIPPED_DIRS.contains(name)) return FileVisitResult.SKIP_SUBTREE;
+                if (OUTPUT_DIRS.contains(name)) {
+                    outputDirs.add(dir);
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (file.getFileName().toString().equals("pom.xml") && !poms.contains(file)) poms.add(file);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static DocumentBuilder newBuilder() throws ParserConfigurationException {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        // A pom has no business declaring a DTD; refusing one rules out external entities and entity expansion
+        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+        factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+        factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+        factory.setNamespaceAware(true);
+        factory.setIgnoringComments(true);
+        factory.setExpandEntityReferences(false);
+        factory.setXIncludeAware(false);
+        return factory.newDocumentBuilder();
+    }
+
+    private static void appendSections(Element parent, List<String> sections, StringBuilder sb) {
+        for (String section : sections) {
+            for (Element e : children(parent, section)) {
+                appendNormalized(e, sb);
+            }
+        }
+    }
+
+    // name{child child ...} or name=text, ignoring whitespace-only text and comments
+    private static void appendNormalized(Element element, StringBuilder sb) {
+        sb.append(localName(element));
+        List<Element> kids = children(element, null);
+        if (kids.isEmpty()) {
+            sb.append('=').append(element.getTextContent().trim()).append(';');
+            return;
+        }
+        sb.append('{');
+        for (Element kid : kids) {
+            appendNormalized(kid, sb);
+        }
+        sb.append('}');
+    }
+
+    private static void collectProperties(@Nullable Element propertiesElement, String source,
+                                          Map<String, Map<String, String>> properties) {
+        for (Element property : children(propertiesElement, null)) {
+            properties.computeIfAbsent(localName(property), k -> new TreeMap<>()).put(source, property.getTextContent().trim());
+        }
+    }
+
+    // Every definition counts: which one applies depends on the module and the active profiles
+    private static void updateProperties(MessageDigest digest, Set<String> names, Map<String, Map<String, String>> properties) {
+        for (String name : names) {
+            for (Map.Entry<String, String> definition : properties.get(name).entrySet()) {
+                update(digest, name + "@" + definition.getKey() + "=" + definition.getValue());
+            }
+        }
+    }
+
+    // Properties referenced from the fingerprinted sections, following references between properties
+    private static Set<String> referencedProperties(CharSequence text, Map<String, Map<String, String>> properties) {
+        Set<String> referenced = new TreeSet<>();
+        List<CharSequence> toScan = new ArrayList<>();
+        toScan.add(text);
+        while (!toScan.isEmpty()) {
+            Matcher m = PROPERTY_REF.matcher(toScan.remove(toScan.size() - 1));
+            while (m.find()) {
+                String name = m.group(1);
+                if (properties.containsKey(name) && referenced.add(name)) {
+                    toScan.addAll(properties.get(name).values());
+                }
+            }
+        }
+        return referenced;
+    }
+
+    private static @Nullable Element child(@Nullable Element parent, String name) {
+        List<Element> found = children(parent, name);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    private static List<Element> children(@Nullable Element parent, @Nullable String name) {
+        List<Element> out = new ArrayList<>();
+        if (parent == null) return out;
+        NodeList nodes = parent.getChildNodes();
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Node node = nodes.item(i);
+            if (node instanceof Element e && (name == null || name.equals(localName(e)))) {
+                out.add(e);
+            }
+        }
+        return out;
+    }
+
+    private static String localName(Element e) {
+        return e.getLocalName() != null ? e.getLocalName() : e.getTagName();
+    }
+
+    private static void update(MessageDigest digest, String s) {
+        digest.update(s.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+}
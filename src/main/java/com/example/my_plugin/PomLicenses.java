@@ -0,0 +1,203 @@
+package com.example.my_plugin;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Licenses of Maven artifacts, read from their POMs in the local repository the way the CycloneDX Maven plugin
+ * does: the licenses of the POM itself, or else those of the nearest parent POM declaring any. License names and
+ * URLs that identify an SPDX license (licenses/license-aliases.csv, or a matrix id) become that id, so the
+ * licenses match the compatibility matrix like the ones in a CycloneDX BOM.
+ *
+ * Released POMs never change, so what was read is kept for the lifetime of the IDE.
+ */
+final class PomLicenses
+{
+    private static final Logger LOG = LogInitializer.getLogger(PomLicenses.class);
+    private static final String ALIASES_RESOURCE = "licenses/license-aliases.csv";
+    private static final int MAX_PARENT_DEPTH = 10;
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    // normalized license name or URL -> SPDX id
+    private static final Map<String, String> ALIASES = loadAliases();
+    // "group:artifact:version" -> licenses
+    private static final Map<String, List<License>> CACHE = new ConcurrentHashMap<>();
+
+    private record PomInfo(List<License> licenses, @Nullable String parentGroup, @Nullable String parentArtifact,
+                           @Nullable String parentVersion) {}
+
+    private PomLicenses() {}
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * @param repository root of the local Maven repository
+     * @return the licenses of the artifact, empty if its POM declares none or is not in the repository
+     */
+    static List<License> of(Path repository, String group, String artifact, String version) {
+        String coordinates = group + ":" + artifact + ":" + version;
+        List<License> cached = CACHE.get(coordinates);
+        if (cached != null) return cached;
+        List<License> licenses = resolve(repository, group, artifact, version, 0);
+        // Snapshots may still change, and a missing POM may be downloaded later
+        if (!version.endsWith("-SNAPSHOT") && Files.isRegularFile(pomPath(repository, group, artifact, version))) {
+            CACHE.put(coordinates, licenses);
+        }
+        return licenses;
+    }
+
+    /**
+     * The root of the local repository holding a resolved artifact file, which sits in
+     * {@code <root>/<group path>/<artifact>/<version>/}.
+     */
+    static @Nullable Path repositoryOf(Path artifactFile, String group) {
+        Path root = artifactFile.getParent();
+        int levels = 2 + group.split("\\.").length;
+        for (int i = 0; i < levels && root != null; i++) root = root.getParent();
+        return root;
+    }
+
+    private static List<License> resolve(Path repository, String group, String artifact, String version, int depth) {
+        PomInfo pom = read(pomPath(repository, group, artifact, version));
+        if (pom == null) return List.of();
+        if (!pom.licenses().isEmpty() || depth >= MAX_PARENT_DEPTH || pom.parentArtifact() == null) return pom.licenses();
+        String parentGroup = pom.parentGroup() != null ? pom.parentGroup() : group;
+        return resolve(repository, parentGroup, pom.parentArtifact(), pom.parentVersion() != null ? pom.parentVersion() : version, depth + 1);
+    }
+
+    private static Path pomPath(Path repository, String group, String artifact, String version) {
+        return repository.resolve(group.replace('.', '/')).resolve(artifact).resolve(version)
+                .resolve(artifact + "-" + version + ".pom");
+    }
+
+    private static @Nullable PomInfo read(Path pom) {
+        if (!Files.isRegularFile(pom)) return null;
+        try (InputStream in = Files.newInputStream(pom)) {
+            XMLStreamReader reader = FACTORY.createXMLStreamReader(in);
+            try {
+                return parse(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (IOException | XMLStreamException e) {
+            LOG.warn("Unreadable POM {}: {}", pom, e.getMessage());
+            return null;
+        }
+    }
+
+    // Only project/licenses/license/{name,url} and project/parent/{groupId,artifactId,version} are read
+    private static PomInfo parse(XMLStreamReader reader) throws XMLStreamException {
+        List<String> path = new ArrayList<>();
+        List<License> licenses = new ArrayList<>();
+        Map<String, String> parent = new HashMap<>();
+        String name = null;
+        String url = null;
+        StringBuilder text = new StringBuilder();
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT -> {
+                    path.add(reader.getLocalName());
+                    text.setLength(0);
+                }
+                case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA -> text.append(reader.getText());
+                case XMLStreamConstants.END_ELEMENT -> {
+                    String value = text.toString().trim();
+                    if (isPath(path, "project", "licenses", "license", "name")) name = value;
+                    else if (isPath(path, "project", "licenses", "license", "url")) url = value;
+                    else if (isPath(path, "project", "licenses", "license")) {
+                        License license = toLicense(name, url);
+                        if (license != null) licenses.add(license);
+                        name = null;
+                        url = null;
+                    } else if (path.size() == 3 && isPath(path.subList(0, 2), "project", "parent")) {
+                        parent.put(path.get(2), value);
+                    }
+                    path.remove(path.size() - 1);
+                    text.setLength(0);
+                }
+                default -> { }
+            }
+        }
+        return new PomInfo(List.copyOf(licenses), parent.get("groupId"), parent.get("artifactId"), parent.get("version"));
+    }
+
+    private static boolean isPath(List<String> path, String... expected) {
+        return path.equals(List.of(expected));
+    }
+
+    private static @Nullable License toLicense(@Nullable String name, @Nullable String url) {
+        String id = spdxId(name);
+        if (id == null) id = spdxId(url);
+        if (id == null) id = name != null && !name.isEmpty() ? name : null;
+        return id == null ? null : new License(id, url != null ? url : "");
+    }
+
+    /**
+     * @return the SPDX id licenses/license-aliases.csv lists for a license name or URL, or null if it has none
+     */
+    static @Nullable String aliasedId(String nameOrUrl) {
+        return ALIASES.get(normalize(nameOrUrl));
+    }
+
+    private static @Nullable String spdxId(@Nullable String nameOrUrl) {
+        if (nameOrUrl == null || nameOrUrl.isBlank()) return null;
+        String id = aliasedId(nameOrUrl);
+        if (id != null) return id;
+        for (String matrixId : CompatibilityMatrix.getInstance().getLicenses()) {
+            if (matrixId.equalsIgnoreCase(nameOrUrl.trim())) return matrixId;
+        }
+        return null;
+    }
+
+    private static String normalize(String nameOrUrl) {
+        String s = nameOrUrl.trim().toLowerCase(Locale.ROOT);
+        s = s.replaceFirst("^https?://", "").replaceFirst("^www\\.", "");
+        while (s.endsWith("/")) s = s.substring(0, s.length() - 1);
+        return s.replaceAll("\\s+", " ");
+    }
+
+    private static Map<String, String> loadAliases() {
+        InputStream is = PomLicenses.class.getClassLoader().getResourceAsStream(ALIASES_RESOURCE);
+        if (is == null) {
+            LOG.error("License alias resource {} not found", ALIASES_RESOURCE);
+            return Collections.emptyMap();
+        }
+        Map<String, String> aliases = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+            reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] row = line.split(",", 2);
+                if (row.length == 2) aliases.put(normalize(row[1]), row[0].trim());
+            }
+        } catch (IOException e) {
+            LOG.error("Failed to read {}: {}", ALIASES_RESOURCE, e.getMessage());
+        }
+        return aliases;
+    }
+}
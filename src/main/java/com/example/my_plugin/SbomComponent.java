@@ -0,0 +1,35 @@
+package com.example.my_plugin;
+
+import java.util.List;
+
+/**
+ * Compact view of one CycloneDX component: only the fields the dependency diff needs.
+ */
+public record SbomComponent(String group, String name, String version, String purl, List<License> licenses)
+{
+    /**
+     * Diff key in the "group:name:version[:licenses]" form understood by
+     * {@link MavenDependencyServiceImpl#parseSetToList(java.util.Set)}. Each license is written as its type,
+     * followed by a newline and its URL when one is known.
+     */
+    public String key() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(group).append(':').append(name).append(':').append(version);
+        if (!licenses.isEmpty()) {
+            sb.append(':');
+            for (int i = 0; i < licenses.size(); i++) {
+                License license = licenses.get(i);
+                if (i > 0) sb.append(',');
+                sb.append(license.getType());
+                if (license.getUrl() != null && !license.getUrl().isEmpty()) {
+                    sb.append('\n').append(license.getUrl());
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    public Dependency toDependency() {
+        return new Dependency(group, name, version, licenses);
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.my_plugin;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Single-pass StAX reader for CycloneDX XML BOMs.
+ *
+ * Only real components are reported: the ones under /bom/components and their nested sub-components.
+ * The metadata component (the project itself) and the components inside pedigree ancestors/descendants/variants
+ * are skipped, and only the direct group/name/version/purl/licenses children of a component are read, so
+ * a pedigree name never leaks into its parent. Memory use is bounded by the depth of the document plus the
+ * component being read, whatever the size of the BOM.
+ */
+public final class SbomReader
+{
+    private static final String CYCLONEDX_NS_PREFIX = "http://cyclonedx.org/schema/bom/";
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private SbomReader() {}
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        // BOMs come from a child process; never resolve DTDs or external entities
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    public static List<SbomComponent> readComponents(File sbomFile) throws IOException {
+        List<SbomComponent> components = new ArrayList<>();
+        read(sbomFile, components::add);
+        return components;
+    }
+
+    public static void read(File sbomFile, Consumer<SbomComponent> sink) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(sbomFile.toPath()))) {
+            read(in, sink);
+        }
+    }
+
+    public static void read(InputStream in, Consumer<SbomComponent> sink) throws IOException {
+        XMLStreamReader reader = null;
+        try {
+            reader = FACTORY.createXMLStreamReader(in);
+            parse(reader, sink);
+        } catch (XMLStreamException e) {
+            throw new IOException("Malformed SBOM: " + e.getMessage(), e);
+        } finally {
+            if (reader != null) {
+                try { reader.close(); } catch (XMLStreamException ignored) {}
+            }
+        }
+    }
+
+    private static void parse(XMLStreamReader reader, Consumer<SbomComponent> sink) throws XMLStreamException {
+        // local names of the open elements; path.get(depth - 1) is the current element
+        List<String> path = new ArrayList<>();
+        Deque<ComponentBuilder> open = new ArrayDeque<>();
+        StringBuilder text = null;   // non-null while capturing a leaf value
+        int captureDepth = -1;
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT -> {
+                    String local = isCycloneDx(reader.getNamespaceURI()) ? reader.getLocalName() : "";
+                    path.add(local);
+                    int depth = path.size();
+                    ComponentBuilder current = open.peek();
+
+                    if ("component".equals(local) && isComponentsEntry(path, current)) {
+                        open.push(new ComponentBuilder(depth));
+                    } else if (current != null && isCapturedField(path, current.depth)) {
+                        text = new StringBuilder();
+                        captureDepth = depth;
+                    }
+                }
+                case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA -> {
+                    if (text != null) text.append(reader.getText());
+                }
+                case XMLStreamConstants.END_ELEMENT -> {
+                    int depth = path.size();
+                    ComponentBuilder current = open.peek();
+                    if (text != null && depth == captureDepth) {
+                        current.accept(path, text.toString().trim());
+                        text = null;
+                        captureDepth = -1;
+                    }
+                    if (current != null && current.depth == depth) {
+                        open.pop();
+                        sink.accept(current.build());
+                    } else if (current != null && depth == current.depth + 2 && "license".equals(path.get(depth - 1))) {
+                        current.endLicense();
+                    }
+                    path.remove(depth - 1);
+                }
+                default -> { }
+            }
+        }
+    }
+
+    private static boolean isCycloneDx(String namespace) {
+        // Accept un-namespaced documents as well, some generators omit the default namespace
+        return namespace == null || namespace.isEmpty() || namespace.startsWith(CYCLONEDX_NS_PREFIX);
+    }
+
+    // <component> directly inside <components>, which itself sits under <bom> or under the component being read
+    private static boolean isComponentsEntry(List<String> path, ComponentBuilder current) {
+        int depth = path.size();
+        if (depth < 3 || !"components".equals(path.get(depth - 2))) return false;
+        if (depth == 3) return "bom".equals(path.get(0));
+        return current != null && current.depth == depth - 2;
+    }
+
+    private static boolean isCapturedField(List<String> path, int componentDepth) {
+        int rel = path.size() - componentDepth;
+        String local = path.get(path.size() - 1);
+        return switch (rel) {
+            case 1 -> local.equals("group") || local.equals("name") || local.equals("version") || local.equals("purl");
+            case 2 -> local.equals("expression") && "licenses".equals(path.get(componentDepth));
+            case 3 -> (local.equals("id") || local.equals("name") || local.equals("url"))
+                    && "licenses".equals(path.get(componentDepth))
+                    && "license".equals(path.get(componentDepth + 1));
+            default -> false;
+        };
+    }
+
+    private static final class ComponentBuilder
+    {
+        final int depth;
+        String group = "";
+        String name = "";
+        String version = "";
+        String purl = "";
+        final List<License> licenses = new ArrayList<>();
+        // the <license> entry being read; an id wins over a name as the license type
+        String licenseId;
+        String licenseName;
+        String licenseUrl;
+
+        ComponentBuilder(int depth) { this.depth = depth; }
+
+        void accept(List<String> path, String value) {
+            int rel = path.size() - depth;
+            String local = path.get(path.size() - 1);
+            if (rel == 1) {
+                switch (local) {
+                    case "group" -> group = value;
+                    case "name" -> name = value;
+                    case "version" -> version = value;
+                    case "purl" -> purl = value;
+                    default -> { }
+                }
+            } else if (rel == 2) {
+                if (!value.isEmpty()) licenses.add(new License(value, ""));
+            } else {
+                switch (local) {
+                    case "id" -> licenseId = value;
+                    case "name" -> licenseName = value;
+                    case "url" -> licenseUrl = value;
+                    default -> { }
+                }
+            }
+        }
+
+        void endLicense() {
+            String type = licenseId != null && !licenseId.isEmpty() ? licenseId : licenseName;
+            if (type != null && !type.isEmpty()) {
+                licenses.add(new License(type, licenseUrl != null ? licenseUrl : ""));
+            }
+            licenseId = null;
+            licenseName = null;
+            licenseUrl = null;
+        }
+
+        SbomComponent build() {
+            return new SbomComponent(group, name, version, purl, List.copyOf(licenses));
+        }
+    }
+}
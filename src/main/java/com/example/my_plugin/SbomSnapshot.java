@@ -0,0 +1,209 @@
+package com.example.my_plugin;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary copy of the component set of the last SBOM, stored next to it in .license-tool/.
+ * It carries the SHA-256 of the BOM it was built from, so the previous side of a diff can be
+ * memory-mapped instead of re-parsing bom-prev.xml, as long as the hashes still match.
+ *
+ * Layout (big endian): magic, format version, hash length + hash, component count, then per component
+ * purl, group, name, version, license count and type/url per license. Strings are a length + UTF-8 bytes.
+ */
+public final class SbomSnapshot
+{
+    private static final Logger LOG = LogInitializer.getLogger(SbomSnapshot.class);
+
+    public static final String FILE_NAME = "bom-snapshot.bin";
+    private static final int MAGIC = 0x4C54_5342; // "LTSB"
+    private static final short FORMAT_VERSION = 1;
+    private static final boolean IS_WINDOWS = System.getProperty("os.name", "").toLowerCase().contains("win");
+
+    private final byte[] sourceHash;
+    private final Map<String, SbomComponent> components;
+
+    private SbomSnapshot(byte[] sourceHash, Map<String, SbomComponent> components) {
+        this.sourceHash = sourceHash;
+        this.components = components;
+    }
+
+    /**
+     * @return true if this snapshot was built from a BOM with the given content hash
+     */
+    public boolean matches(byte[] hash) {
+        return Arrays.equals(sourceHash, hash);
+    }
+
+    /**
+     * Components keyed by purl (or by the diff key for components that have no purl).
+     */
+    public Map<String, SbomComponent> getComponents() {
+        return components;
+    }
+
+    public static Path pathIn(Path licenseToolDir) {
+        return licenseToolDir.resolve(FILE_NAME);
+    }
+
+    public static byte[] hash(File file) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Content hash of a component set that did not come from a BOM file, e.g. one read from the IDE model.
+     */
+    public static byte[] hash(Collection<SbomComponent> components) {
+        List<String> keys = new ArrayList<>();
+        for (SbomComponent component : components) keys.add(keyOf(component) + "\u0000" + component.key());
+        keys.sort(null);
+        MessageDigest digest = sha256();
+        for (String key : keys) {
+            digest.update(key.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+        return digest.digest();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String keyOf(SbomComponent component) {
+        return component.purl() != null && !component.purl().isEmpty() ? component.purl() : component.key();
+    }
+
+    /**
+     * Writes the snapshot atomically (temp file + move), so a crash never leaves a half-written file behind.
+     */
+    public static void write(Path snapshotPath, byte[] sourceHash, Collection<SbomComponent> components) throws IOException {
+        Files.createDirectories(snapshotPath.getParent());
+        Path tmp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try (OutputStream os = Files.newOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeShort(FORMAT_VERSION);
+            out.writeInt(sourceHash.length);
+            out.write(sourceHash);
+            out.writeInt(components.size());
+            for (SbomComponent c : components) {
+                writeString(out, c.purl());
+                writeString(out, c.group());
+                writeString(out, c.name());
+                writeString(out, c.version());
+                out.writeInt(c.licenses().size());
+                for (License license : c.licenses()) {
+                    writeString(out, license.getType());
+                    writeString(out, license.getUrl());
+                }
+            }
+        }
+        Files.move(tmp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Memory-maps and decodes a snapshot.
+     * @return the snapshot, or null if there is none or it is unreadable (it will then be rebuilt from XML)
+     */
+    public static @Nullable SbomSnapshot read(Path snapshotPath) {
+        if (!Files.isRegularFile(snapshotPath)) return null;
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            ByteBuffer buf = mapOrRead(channel);
+            if (buf.getInt() != MAGIC || buf.getShort() != FORMAT_VERSION) {
+                LOG.info("Ignoring SBOM snapshot with unknown format: {}", snapshotPath);
+                return null;
+            }
+            byte[] hash = new byte[readCount(buf, 1)];
+            buf.get(hash);
+            // Every component takes at least its five length fields
+            int count = readCount(buf, 5 * Integer.BYTES);
+            Map<String, SbomComponent> components = new LinkedHashMap<>(Math.max(16, count * 2));
+            for (int i = 0; i < count; i++) {
+                String purl = readString(buf);
+                String group = readString(buf);
+                String name = readString(buf);
+                String version = readString(buf);
+                int licenseCount = readCount(buf, 2 * Integer.BYTES);
+                List<License> licenses = new ArrayList<>(licenseCount);
+                for (int j = 0; j < licenseCount; j++) {
+                    licenses.add(new License(readString(buf), readString(buf)));
+                }
+                SbomComponent component = new SbomComponent(group, name, version, purl, List.copyOf(licenses));
+                components.put(keyOf(component), component);
+            }
+            return new SbomSnapshot(hash, components);
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            LOG.warn("Unreadable SBOM snapshot {}: {}", snapshotPath, e.toString());
+            return null;
+        }
+    }
+
+    private static ByteBuffer mapOrRead(FileChannel channel) throws IOException {
+        if (!IS_WINDOWS) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        // Windows keeps a mapped file locked until the mapping is garbage collected, which would make the
+        // next write() fail to replace it, so read it onto the heap there instead
+        ByteBuffer buf = ByteBuffer.allocate((int) channel.size());
+        while (buf.hasRemaining() && channel.read(buf) >= 0) { }
+        return buf.flip();
+    }
+
+    // A count is checked against the bytes left before anything is sized by it, so a corrupt file cannot make
+    // the reader allocate gigabytes
+    private static int readCount(ByteBuffer buf, int minBytesEach) {
+        int count = buf.getInt();
+        if (count < 0 || count > buf.remaining() / minBytesEach) {
+            throw new IllegalArgumentException("count " + count + " exceeds the remaining " + buf.remaining() + " bytes");
+        }
+        return count;
+    }
+
+    private static String readString(ByteBuffer buf) {
+        int length = buf.getInt();
+        String s = StandardCharsets.UTF_8.decode(buf.slice(buf.position(), length)).toString();
+        buf.position(buf.position() + length);
+        return s;
+    }
+}
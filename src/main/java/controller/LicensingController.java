@@ -3,6 +3,8 @@ package controller;
 import chatbot.ChatbotSession;
 import chatbot.ChatbotSessionLlamaPython;
 
+import com.example.my_plugin.ChatbotSessionRegistry;
+import com.example.my_plugin.CoalescingScheduler;
 import com.example.my_plugin.License;
 
 import com.example.my_plugin.MavenDependencyServiceImpl;
@@ -10,6 +12,9 @@ import com.example.my_plugin.MyToolWindowBridge;
 import com.example.my_plugin.MyToolWindowFactory;
 import com.example.my_plugin.PythonServerService;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import org.apache.commons.io.IOUtils;
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -22,6 +27,7 @@ import java.io.InputStreamReader;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 import com.intellij.openapi.project.Project;
@@ -53,8 +59,14 @@ public final class LicensingController implements Disposable {
     private LLMManager llmManager;
     private IDECommunicator ideCommunicator;
     private ConfigurationManager configManager;
-    private static volatile ChatbotSession cachedSession;
-    private static String cachedModel;
+
+    // Quiet period before a burst of pom.xml changes is analyzed, in milliseconds
+    private static final long POM_CHANGE_QUIET_PERIOD_MS = Long.getLong("licenseTool.pomChange.quietPeriodMs", 1500L);
+    private final CoalescingScheduler dependencyChangeScheduler;
+    // Indicator of the dependency analysis task currently running, if any
+    private volatile ProgressIndicator analysisIndicator;
+    // Set when a cancel arrives before the queued task has started running
+    private volatile boolean analysisCancelRequested;
     /**
      * Constructor initializes the controller and all required components
      */
@@ -66,6 +78,9 @@ public final class LicensingController implements Disposable {
         this.toolManager = new ToolManager();
         this.llmManager = new LLMManager();
         this.ideCommunicator = new IDECommunicator();
+        this.dependencyChangeScheduler = new CoalescingScheduler(
+                AppExecutorUtil.getAppScheduledExecutorService(), POM_CHANGE_QUIET_PERIOD_MS, this::runDependencyAnalysis,
+                this::cancelDependencyAnalysis);
 
         // Obtain the PythonServerService as a project service (preferred)
         PythonServerService pythonService = project.getService(PythonServerService.class);
@@ -260,31 +275,71 @@ public final class LicensingController implements Disposable {
     //---------------------------------------------------------------------
     // Tool API Interface Functions
     //---------------------------------------------------------------------
+    /**
+     * Called for every pom.xml change event. Events are debounced and coalesced, so a save-all or a branch
+     * switch touching many poms results in a single SBOM/analysis run (see {@link CoalescingScheduler}).
+     */
     public void onDependencyChange(Project project, String pomPath)
+    {
+        LOGGER.info("Dependency change requested for {}", pomPath);
+        dependencyChangeScheduler.request(pomPath);
+    }
+
+    // Queues one analysis run as a cancellable background task; the returned future completes when the run is over
+    private CompletableFuture<?> runDependencyAnalysis(String pomPath)
     {
         System.out.println("addDependency LicensingController");
         MyToolWindowFactory.ChatUi ui = MyToolWindowBridge.Companion.getInstance(project).getUi();
         if (ui == null) {
             System.out.println("UI is null, cannot start animation");
             LOGGER.warn("UI is null, cannot start animation");
-            return;
+            return CompletableFuture.completedFuture(null);
         }
         // Start animation on EDT
         ui.startSbomAnimation();
-        // Do heavy work in background
-        ApplicationManager.getApplication().executeOnPooledThread(() -> {
-            try {
+        analysisCancelRequested = false;
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        new Task.Backgroundable(project, "Analyzing dependency licenses", true) {
+            @Override
+            public void run(ProgressIndicator indicator) {
+                analysisIndicator = indicator;
+                if (analysisCancelRequested) {
+                    indicator.cancel();
+                }
                 MavenDependencyServiceImpl mavenService = new MavenDependencyServiceImpl(project);
                 System.out.println("addDependency - flagNewDependency called");
-                mavenService.flagNewDependency(pomPath);
-            } catch (Exception e) {
-                e.printStackTrace();
-                LOGGER.error("Error in onDependencyChange: {}", e.getMessage());
-            } finally {
+                mavenService.flagNewDependency(pomPath, indicator);
+            }
+
+            @Override
+            public void onCancel() {
+                LOGGER.info("Dependency analysis for {} was cancelled", pomPath);
+            }
+
+            @Override
+            public void onThrowable(Throwable error) {
+                LOGGER.error("Error in onDependencyChange: {}", error.getMessage());
+            }
+
+            @Override
+            public void onFinished() {
+                analysisIndicator = null;
                 System.out.println("closing animation");
                 ui.stopAnimation();
+                done.complete(null);
             }
-        });
+        }.queue();
+        return done;
+    }
+
+    // Cancels the running analysis; it stops at its next cancellation check (killing Maven if it is running)
+    private void cancelDependencyAnalysis()
+    {
+        analysisCancelRequested = true;
+        ProgressIndicator indicator = analysisIndicator;
+        if (indicator != null) {
+            indicator.cancel();
+        }
     }
 
     /**
@@ -461,22 +516,21 @@ public final class LicensingController implements Disposable {
             //Unable to load system prompt
             systemPrompt = "You are a friendly assistant built into in IDE to help with software licensing problems.";
         }
-        cachedSession = new ChatbotSessionLlamaPython(
+        ChatbotSession session = new ChatbotSessionLlamaPython(
                 "localhost",
                 selectedModel,
                 systemPrompt
         );
-        System.out.println("New chatbot session created." + "Cashed model: " + selectedModel + " Cached session: " + cachedSession);
-        LOGGER.info("New chatbot session created.Cashed model: {} Cached session: {}", selectedModel, cachedSession);
-        cachedModel = selectedModel;
-        System.out.println("Selected model: " + selectedModel);
-        return cachedSession;
+        System.out.println("New chatbot session created." + "Model: " + selectedModel + " Session: " + session);
+        LOGGER.info("New chatbot session created. Model: {} Session: {}", selectedModel, session);
+        return session;
     }
     /**
-     * Retrieves a cached ChatbotSession or creates a new one if none exists
+     * Retrieves the project's chat session for the model, or creates a new one if none exists. Sessions are
+     * kept per project and model by {@link ChatbotSessionRegistry}.
      * @return ChatbotSession instance
      */
-    public static synchronized ChatbotSession getChatbotSession(String selectedModel) {
+    public static ChatbotSession getChatbotSession(Project project, String selectedModel) {
         // String selectedModel = System.getenv("LICENSE_TOOL_MODEL");
         System.out.println("getChatbotSession - Selected model: " + selectedModel);
         LOGGER.info("Get chatbot session for model: {}", selectedModel);
@@ -487,17 +541,14 @@ public final class LicensingController implements Disposable {
 
         }
 
-        if (cachedSession == null || cachedModel == null || !cachedModel.equals(selectedModel)) {
-            System.out.println("Creating new chatbot session for model: " + selectedModel);
-            LOGGER.info("No cachedSession, creating new chatbot session for model: {}", selectedModel);
-            return getNewChatbotSession(selectedModel);
-        }
-        return cachedSession;
+        final String model = selectedModel;
+        return ChatbotSessionRegistry.getInstance(project)
+                .get(model, ChatbotSessionRegistry.Purpose.CHAT, () -> getNewChatbotSession(model));
     }
 
     /** Optional: allow resetting if config/env changed. */
-    public static synchronized void resetChatbotSession() {
-        cachedSession = null;
+    public static void resetChatbotSession(Project project) {
+        ChatbotSessionRegistry.getInstance(project).reset(ChatbotSessionRegistry.Purpose.CHAT);
         LOGGER.info("Chatbot session reset");
     }
 
@@ -1812,16 +1863,7 @@ public final class LicensingController implements Disposable {
     @Override
     public void dispose() {
         LOGGER.info("Licensing Controller disposing");
-        try {
-            // If you have background tasks/listeners registered to this controller as Disposables,
-            // they should be registered via Disposer.register(this, child) and will be disposed automatically.
-            // Clear cached LLM session to avoid leaks.
-            resetChatbotSession();
-        } catch (Exception e) {
-            LOGGER.warn("Error during Licensing Controller disposal: {}", e.getMessage());
-        } finally {
-            // Clear other cached state if needed
-            cachedModel = null;
-        }
+        dependencyChangeScheduler.dispose();
+        // Chatbot sessions belong to the project's ChatbotSessionRegistry, which closes them when the project closes
     }
 }
@@ -0,0 +1,403 @@
+package com.example.my_plugin
+
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.io.FileUtil
+import com.intellij.ui.components.JBList
+import com.intellij.ui.components.JBScrollPane
+import com.intellij.util.ui.JBUI
+import org.slf4j.Logger
+import java.awt.Dimension
+import java.awt.Graphics
+import java.awt.event.ComponentAdapter
+import java.awt.event.ComponentEvent
+import java.awt.event.MouseAdapter
+import java.awt.event.MouseEvent
+import java.io.IOException
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.time.Instant
+import java.time.ZoneId
+import java.time.format.DateTimeFormatter
+import javax.swing.AbstractListModel
+import javax.swing.JComponent
+import javax.swing.JEditorPane
+import javax.swing.ListCellRenderer
+import javax.swing.ListSelectionModel
+import javax.swing.ScrollPaneConstants
+import javax.swing.SwingUtilities
+
+/**
+ * The chat transcript as a virtualized list: only the visible messages are painted, message heights are cached,
+ * and messages are rendered into a small pool of HTML panes on demand instead of one document holding the whole
+ * conversation.
+ *
+ * Only the most recent messages (`licenseTool.chat.expandedMessages`, default 20) are shown in full; older ones
+ * collapse into a one-line summary that expands on click (a double click collapses a message again). Beyond
+ * `licenseTool.chat.retainedMessages` (default 200) the bodies of collapsed messages are moved to
+ * .license-tool/transcript/ and read back when expanded, so the heap stays flat however long the session runs.
+ * All methods must be called on the EDT.
+ */
+class ChatTranscript(private val project: Project) : Disposable {
+
+    class Message(val id: Long, val role: String, text: String, val model: String?, val ts: Long = System.currentTimeMillis()) {
+        // Null while the body is evicted to disk
+        var text: String? = text
+        var summary: String = summarize(text)
+        // Null means automatic: expanded while among the most recent messages
+        var expanded: Boolean? = null
+        var evictedTo: Path? = null
+
+        // Used when selected messages are copied
+        override fun toString(): String = text ?: summary
+    }
+
+    private class MessageModel : AbstractListModel<Message>() {
+        val items = ArrayList<Message>()
+        override fun getSize(): Int = items.size
+        override fun getElementAt(index: Int): Message = items[index]
+        fun added() = fireIntervalAdded(this, items.size - 1, items.size - 1)
+        fun changed(index: Int) = fireContentsChanged(this, index, index)
+        fun changedAll() {
+            if (items.isNotEmpty()) fireContentsChanged(this, 0, items.size - 1)
+        }
+    }
+
+    private val LOG: Logger = LogInitializer.getLogger(ChatTranscript::class.java)
+
+    private val messages = MessageModel()
+    private var nextId = 0L
+    // Everything below this index has been considered for eviction
+    private var evictionScanned = 0
+
+    // Cell heights by render key, valid for measuredWidth
+    private val heights = HashMap<Long, Int>()
+    private var measuredWidth = -1
+    // Rendered panes by render key; only about a screenful is ever needed
+    private val panes = object : LinkedHashMap<Long, JEditorPane>(32, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Long, JEditorPane>): Boolean = size > PANE_CACHE_SIZE
+    }
+
+    private val transcriptDir: Path = (project.basePath?.let { Paths.get(it) } ?: Paths.get("."))
+        .resolve(".license-tool").resolve("transcript")
+    private val sessionDir: Path = transcriptDir.resolve(System.currentTimeMillis().toString())
+
+    private val cell = MessageCell()
+
+    private val list = JBList(messages).apply {
+        cellRenderer = ListCellRenderer { _, value, index, _, _ -> cell.also { it.message = value; it.index = index } }
+        setExpandableItemsEnabled(false)
+        selectionMode = ListSelectionModel.MULTIPLE_INTERVAL_SELECTION
+        addMouseListener(object : MouseAdapter() {
+            override fun mouseClicked(e: MouseEvent) {
+                val index = locationToIndex(e.point)
+                if (index < 0 || getCellBounds(index, index)?.contains(e.point) != true) return
+                val expanded = isExpanded(messages.items[index], index)
+                if (!expanded && e.clickCount == 1) setExpanded(index, true)
+                else if (expanded && e.clickCount == 2) setExpanded(index, false)
+            }
+        })
+    }
+
+    val component: JComponent = JBScrollPane(list).apply {
+        border = JBUI.Borders.empty()
+        horizontalScrollBarPolicy = ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER
+        viewport.addComponentListener(object : ComponentAdapter() {
+            override fun componentResized(e: ComponentEvent) {
+                if (viewport.width != measuredWidth) {
+                    heights.clear()
+                    panes.clear()
+                    measuredWidth = viewport.width
+                    messages.changedAll()
+                }
+            }
+        })
+    }
+
+    init {
+        // Bodies evicted by earlier IDE sessions are never read again
+        ApplicationManager.getApplication().executeOnPooledThread { deleteStaleSessions() }
+    }
+
+    fun size(): Int = messages.items.size
+
+    fun add(role: String, text: String, model: String? = null): Int {
+        messages.items += Message(nextId++, role, text, model)
+        val index = messages.items.size - 1
+        messages.added()
+        // The message that just dropped out of the recent ones collapses
+        val collapsing = index - EXPANDED_RECENT
+        if (collapsing >= 0) messages.changed(collapsing)
+        evictOldBodies()
+        list.ensureIndexIsVisible(index)
+        return index
+    }
+
+    fun update(index: Int, text: String) {
+        val message = messages.items[index]
+        message.text = text
+        message.summary = summarize(text)
+        forget(message)
+        messages.changed(index)
+        if (index == messages.items.size - 1) list.ensureIndexIsVisible(index)
+    }
+
+    private fun isExpanded(message: Message, index: Int): Boolean =
+        message.expanded ?: (index >= messages.items.size - EXPANDED_RECENT)
+
+    private fun setExpanded(index: Int, expanded: Boolean) {
+        val message = messages.items[index]
+        message.expanded = expanded
+        messages.changed(index)
+        if (!expanded && index < messages.items.size - RETAINED) evict(message)
+    }
+
+    private fun renderKey(message: Message, expanded: Boolean): Long = message.id * 2 + if (expanded) 1 else 0
+
+    private fun forget(message: Message) {
+        for (expanded in listOf(true, false)) {
+            heights.remove(renderKey(message, expanded))
+            panes.remove(renderKey(message, expanded))
+        }
+    }
+
+    private fun cellWidth(): Int = if (measuredWidth > 0) measuredWidth else JBUI.scale(400)
+
+    private fun heightOf(message: Message, expanded: Boolean): Int =
+        heights.getOrPut(renderKey(message, expanded)) {
+            val pane = paneFor(message, expanded)
+            pane.setSize(cellWidth(), Short.MAX_VALUE.toInt())
+            pane.preferredSize.height
+        }
+
+    private fun paneFor(message: Message, expanded: Boolean): JEditorPane =
+        panes.getOrPut(renderKey(message, expanded)) {
+            val html = if (expanded) renderMessageHtml(message, loadText(message)) else renderSummaryHtml(message)
+            JEditorPane("text/html", html).apply {
+                isEditable = false
+                putClientProperty(JEditorPane.HONOR_DISPLAY_PROPERTIES, true)
+            }
+        }
+
+    // Measures from the height cache and only renders when painted, so off-screen messages cost no layout
+    private inner class MessageCell : JComponent() {
+        var message: Message? = null
+        var index = 0
+
+        override fun getPreferredSize(): Dimension {
+            val m = message ?: return Dimension(cellWidth(), 0)
+            return Dimension(cellWidth(), heightOf(m, isExpanded(m, index)))
+        }
+
+        override fun paintComponent(g: Graphics) {
+            val m = message ?: return
+            val pane = paneFor(m, isExpanded(m, index))
+            pane.setSize(width, height)
+            pane.paint(g)
+        }
+    }
+
+    private fun evictOldBodies() {
+        val limit = messages.items.size - RETAINED
+        while (evictionScanned < limit) {
+            val message = messages.items[evictionScanned]
+            if (!isExpanded(message, evictionScanned)) evict(message)
+            evictionScanned++
+        }
+    }
+
+    private fun evict(message: Message) {
+        val text = message.text ?: return
+        val file = sessionDir.resolve("${message.id}.md")
+        ApplicationManager.getApplication().executeOnPooledThread {
+            try {
+                Files.createDirectories(sessionDir)
+                Files.writeString(file, text, StandardCharsets.UTF_8)
+                SwingUtilities.invokeLater {
+                    // Keep the body if the message was expanded or changed in the meantime
+                    if (message.text === text && message.expanded != true) {
+                        message.evictedTo = file
+                        message.text = null
+                        panes.remove(renderKey(message, true))
+                    }
+                }
+            } catch (e: IOException) {
+                LOG.warn("Could not move chat message {} to {}: {}", message.id, file, e.message)
+            }
+        }
+    }
+
+    private fun loadText(message: Message): String {
+        message.text?.let { return it }
+        val file = message.evictedTo ?: return message.summary
+        return try {
+            Files.readString(file, StandardCharsets.UTF_8).also { message.text = it }
+        } catch (e: IOException) {
+            LOG.warn("Could not read chat message {} from {}: {}", message.id, file, e.message)
+            message.summary
+        }
+    }
+
+    private fun deleteStaleSessions() {
+        try {
+            if (!Files.isDirectory(transcriptDir)) return
+            Files.list(transcriptDir).use { dirs ->
+                dirs.filter { it != sessionDir }.forEach { FileUtil.delete(it) }
+            }
+        } catch (e: IOException) {
+            LOG.warn("Could not clean up {}: {}", transcriptDir, e.message)
+        }
+    }
+
+    override fun dispose() {
+        panes.clear()
+        heights.clear()
+        FileUtil.delete(sessionDir)
+    }
+
+    private val tsFmt: DateTimeFormatter = DateTimeFormatter.ofPattern("HH:mm").withZone(ZoneId.systemDefault())
+
+    private fun escapeHtml(s: String): String = s
+        .replace("&", "&amp;")
+        .replace("<", "&lt;")
+        .replace(">", "&gt;")
+        .replace("\n", "<br>")
+
+    private fun markdownToHtmlBasic(src: String): String {
+        val codeBlocks = mutableListOf<String>()
+        var text = src
+        text = FENCE_REGEX.replace(text) { m ->
+            val idx = codeBlocks.size
+            codeBlocks += m.groupValues[1]
+            "@@CODEBLOCK_$idx@@"
+        }
+        text = escapeHtml(text)
+        text = text.replace(INLINE_CODE_REGEX) { m -> "<span class='code'>" + m.groupValues[1] + "</span>" }
+        text = text.replace(BOLD_REGEX) { m -> "<b>" + m.groupValues[1] + "</b>" }
+        text = text.replace(ITALIC_REGEX) { m -> "<i>" + m.groupValues[1] + "</i>" }
+        text = text.lines().joinToString("\n") { line ->
+            when {
+                line.startsWith("### ") -> "<b>" + line.removePrefix("### ") + "</b>"
+                line.startsWith("## ")  -> "<b>" + line.removePrefix("## ") + "</b>"
+                line.startsWith("# ")   -> "<b>" + line.removePrefix("# ") + "</b>"
+                else -> line
+            }
+        }
+        val lines = text.split("\n")
+        val out = StringBuilder()
+        var inList = false
+        for (ln in lines) {
+            val trimmed = ln.trim()
+            val isBullet = trimmed.startsWith("- ") || trimmed.startsWith("* ")
+            if (isBullet && !inList) { out.append("<ul>"); inList = true }
+            if (!isBullet && inList) { out.append("</ul>"); inList = false }
+            if (isBullet) out.append("<li>").append(trimmed.substring(2)).append("</li>")
+            else out.append(ln).append("\n")
+        }
+        if (inList) out.append("</ul>")
+        text = out.toString()
+
+        // Replace placeholders with escaped code blocks (use local vars so static analysis sees usage)
+        codeBlocks.forEachIndexed { idx, raw ->
+            val replaced = "<pre>" + escapeHtml(raw.trim()) + "</pre>"
+            text = text.replace("@@CODEBLOCK_${'$'}idx@@", replaced)
+        }
+        return text
+    }
+
+    private fun renderSummaryHtml(m: Message): String {
+        val name = if (m.role == "user") "You" else "Bot"
+        val time = tsFmt.format(Instant.ofEpochMilli(m.ts))
+        return "<html><head>$STYLE</head><body><div class='msg collapsed'><b>$name</b> " +
+            escapeHtml(m.summary) + " <span class='meta'>$time — click to expand</span></div></body></html>"
+    }
+
+    private fun renderMessageHtml(m: Message, text: String): String {
+        val roleClass = if (m.role == "user") "user" else "bot"
+        val time = tsFmt.format(Instant.ofEpochMilli(m.ts))
+        val modelStr = m.model?.let { " — <span class='meta'>" + escapeHtml(it) + "</span>" } ?: ""
+        val htmlText = markdownToHtmlBasic(text)
+        val name = if (m.role == "user") "You" else "Bot"
+        val nameColor = if (m.role == "user") "#0b3d62" else "#2b2d30"
+        val avatarLetter = if (m.role == "user") "U" else "B"
+        val avatarBg = if (m.role == "user") "#0b6eff" else "#6b6f76"
+        val rowHtml = if (m.role == "user") {
+            // User on the right: message cell first, avatar cell on the far right
+            """
+            <table width='100%' cellspacing='4' cellpadding='0'>
+              <tr>
+                <td width='*' align='right'>
+                  <div class='msg $roleClass'>
+                    <div class='name' style='color:$nameColor;'>$name</div>
+                    $htmlText
+                    <div class='meta'>$time$modelStr</div>
+                  </div>
+                </td>
+                <td width='28' align='center' valign='top' bgcolor='$avatarBg'>
+                  <font color='#ffffff'><b>$avatarLetter</b></font>
+                </td>
+              </tr>
+            </table>
+            """.trimIndent()
+        } else {
+            // Bot on the left: avatar first, message next
+            """
+            <table width='100%' cellspacing='4' cellpadding='0'>
+              <tr>
+                <td width='28' align='center' valign='top' bgcolor='$avatarBg'>
+                  <font color='#ffffff'><b>$avatarLetter</b></font>
+                </td>
+                <td width='*'>
+                  <div class='msg $roleClass'>
+                    <div class='name' style='color:$nameColor;'>$name</div>
+                    $htmlText
+                    <div class='meta'>$time$modelStr</div>
+                  </div>
+                </td>
+              </tr>
+            </table>
+            """.trimIndent()
+        }
+        return "<html><head>$STYLE</head><body><div class='wrap'>$rowHtml</div></body></html>"
+    }
+
+    companion object {
+        private val EXPANDED_RECENT = Integer.getInteger("licenseTool.chat.expandedMessages", 20)
+        private val RETAINED = maxOf(EXPANDED_RECENT, Integer.getInteger("licenseTool.chat.retainedMessages", 200))
+        private const val PANE_CACHE_SIZE = 32
+        private const val SUMMARY_CHARS = 120
+
+        private val FENCE_REGEX = Regex("```(.*?)```", RegexOption.DOT_MATCHES_ALL)
+        private val INLINE_CODE_REGEX = Regex("`([^`]+)`")
+        private val BOLD_REGEX = Regex("\\*\\*([^*]+)\\*\\*")
+        private val ITALIC_REGEX = Regex("(?<!\\*)\\*([^*]+)\\*(?!\\*)")
+        private val MARKUP_REGEX = Regex("[`*#>]+|^\\s*[-*]\\s+")
+        private val WHITESPACE_REGEX = Regex("\\s+")
+
+        private val STYLE = """
+            <style>
+              body { font-family: sans-serif; font-size: 12px; margin: 0; }
+              .wrap { padding: 0 8px; }
+              .msg { padding: 8px 10px; margin: 6px 0; border: 1px solid #e1e3e6; background: #ffffff; }
+              .user  { background: #dfefff; }
+              .bot   { background: #f5f6f7; }
+              .collapsed { padding: 4px 10px; margin: 2px 8px; color: #2b2d30; }
+              .meta { font-size: 10px; color: #6b6f76; margin-top: 4px; }
+              .name { font-size: 11px; font-weight: bold; margin-bottom: 4px; }
+              .code { font-family: Monospaced; background:#ffffff; border:1px solid #e1e3e6; padding:2px 4px; }
+              pre { font-family: Monospaced; background:#ffffff; border:1px solid #e1e3e6; padding:8px; }
+              a { color:#0b6eff; text-decoration:none; }
+            </style>
+        """.trimIndent()
+
+        // First non-blank line without markdown markup, shortened
+        private fun summarize(text: String): String {
+            val line = text.lineSequence().map { it.replace(MARKUP_REGEX, "").trim() }.firstOrNull { it.isNotEmpty() } ?: ""
+            val collapsed = line.replace(WHITESPACE_REGEX, " ")
+            return if (collapsed.length > SUMMARY_CHARS) collapsed.substring(0, SUMMARY_CHARS) + "…" else collapsed
+        }
+    }
+}
@@ -1,64 +1,100 @@
 package com.example.my_plugin
 
+import com.intellij.openapi.progress.ProcessCanceledException
+import com.intellij.openapi.progress.ProgressIndicator
 import java.io.File
+import java.util.concurrent.TimeUnit
 
 object CycloneDxMavenInvoker {
     private val LOG = LogInitializer.getLogger(CycloneDxMavenInvoker::class.java)
 
-    fun generateSbom(mavenProjectDir: File, outputDir: String, pomPath: File): File {
+    /**
+     * How Maven is started, from `licenseTool.maven.mode`: `cold` runs a fresh `mvn`/`./mvnw` JVM every time,
+     * `warm` goes through the Maven Daemon (mvnd), whose daemon JVM keeps plugins and the project model loaded between
+     * runs, and `auto` (the default) uses mvnd when it is installed and the project has no Maven wrapper, since the
+     * Maven version a wrapper pins must not be swapped for the one bundled with mvnd; otherwise it runs cold.
+     */
+    enum class MavenMode { COLD, WARM, AUTO }
+
+    val mode: MavenMode = when (System.getProperty("licenseTool.maven.mode", "auto").trim().lowercase()) {
+        "cold" -> MavenMode.COLD
+        "warm" -> MavenMode.WARM
+        else -> MavenMode.AUTO
+    }
+
+    /**
+     * Whether Maven may resolve from the network, from `licenseTool.maven.offline`: `always` runs every build with
+     * `-o`, `never` always resolves online, and `auto` (the default) runs offline once a successful online run has
+     * seeded the local repository for the project, retries online when the offline run misses an artifact, and
+     * retries offline when an online run hits `licenseTool.maven.timeoutSeconds`.
+     */
+    enum class OfflineMode { AUTO, ALWAYS, NEVER }
+
+    val offline: OfflineMode = when (System.getProperty("licenseTool.maven.offline", "auto").trim().lowercase()) {
+        "always" -> OfflineMode.ALWAYS
+        "never" -> OfflineMode.NEVER
+        else -> OfflineMode.AUTO
+    }
+
+    // Local repository shared by all runs (e.g. one prepared on an air-gapped agent), else Maven's own setting
+    private val localRepo: String? = System.getProperty("licenseTool.maven.localRepo")?.trim()?.takeIf { it.isNotEmpty() }
+
+    /** A Maven run killed after `licenseTool.maven.timeoutSeconds`. */
+    class MavenTimeoutException(message: String) : RuntimeException(message)
+
+    // Looked up once, the PATH does not change while the IDE runs
+    private val mvndCmd: String? by lazy { getMvndFromHome() ?: getMvndFromPath() }
+
+    /**
+     * Runs the CycloneDX Maven plugin for the given pom. When [indicator] is cancelled while Maven is running,
+     * the Maven process and its children are killed and a [ProcessCanceledException] is thrown; a run exceeding
+     * `licenseTool.maven.timeoutSeconds` is killed the same way and fails with the tail of its output.
+     */
+    @JvmOverloads
+    fun generateSbom(mavenProjectDir: File, outputDir: String, pomPath: File, indicator: ProgressIndicator? = null): File {
         //require(File(mavenProjectDir, "pom.xml").exists()) { "pom.xml not found in ${mavenProjectDir.absolutePath}" }
 
         val mvnCmd = getMvnCmd(mavenProjectDir)
+        val warm = isMvnd(mvnCmd)
+        LOG.info("Generating SBOM with ${if (warm) "warm" else "cold"} Maven: $mvnCmd")
         // make a copy of the pomPath file into the mavenProjectDir
         val pomDir = File(pomPath.parent)
-        val process = ProcessBuilder(
+        val command = listOf(
             mvnCmd,
+            // Batch mode keeps the output plain (mvnd otherwise renders its own terminal UI) and never prompts
+            "-B",
             "org.cyclonedx:cyclonedx-maven-plugin:2.9.1:makeAggregateBom",
             "-DoutputFormat=xml",
             "-DoutputDirectory=$mavenProjectDir/$outputDir",
             "-DoutputName=bom",
             "-DincludeBomSerialNumber=false",
         )
-            //.directory(mavenProjectDir)
-            .directory(pomDir)
-            .redirectErrorStream(true)
-            .start()
-
-        // print the output for debugging
 
-
-        val output = process.inputStream.bufferedReader()
+        // intercept BOM path while the output streams by
         var bomFilePath: String? = null
+        val run = runOfflineFirst(command, pomDir, mavenProjectDir, indicator, warm) { line ->
+            if (line.contains(BOM_WRITTEN_MARKER)) bomFilePath = line.substringAfter(BOM_WRITTEN_MARKER).trim()
+        }
 
-        val exitCode = process.waitFor()
-
-        if (exitCode != 0) {
-            LOG.error("Maven SBOM generation failed with exit code $exitCode")
-            LOG.error("Error during the generation of the SBOM:\n$output")
-            throw RuntimeException("Error during the generation of the SBOM:\n$output")
-        }else {
-            // wait for process to finish and capture output line by line
-            output.useLines { lines ->
-                lines.forEach { line ->
-                    // intercept BOM path
-                    if (line.contains("CycloneDX: Writing and validating BOM (XML):")) {
-                        val detected = line.substringAfter("CycloneDX: Writing and validating BOM (XML):").trim()
-                        bomFilePath = detected
-                        // split by "/" and get last element to ensure it's "bom.xml"
-                        if (bomFilePath.split("/").last() != "bom.xml") {
-                            println("Unexpected BOM file name: $bomFilePath")
-                            LOG.info("Unexpected BOM file name: $bomFilePath")
-                            val newSbomFilePath = "$mavenProjectDir/$outputDir/bom.xml"
-                            // rename to bom.xml
-                            if(renameFile(bomFilePath, newSbomFilePath)) {
-                                println("Renamed to bom.xml")
-                                LOG.info("Renamed to $newSbomFilePath")
-                            }else {
-                                println("[ERROR] Failed to rename BOM file to bom.xml")
-                                LOG.error("Failed to rename BOM file to bom.xml")
-                            }
-                        }
-                    }
+        if (run.exitCode != 0) {
+            LOG.error("Maven SBOM generation failed with exit code ${run.exitCode}")
+            LOG.error("Error during the generation of the SBOM:\n${run.tail}")
+            throw RuntimeException("Error during the generation of the SBOM:\n${run.tail}")
+        }
+
+        // split by "/" and get last element to ensure it's "bom.xml"
+        bomFilePath?.let { detected ->
+            if (detected.split("/").last() != "bom.xml") {
+                println("Unexpected BOM file name: $detected")
+                LOG.info("Unexpected BOM file name: $detected")
+                val newSbomFilePath = "$mavenProjectDir/$outputDir/bom.xml"
+                // rename to bom.xml
+                if(renameFile(detected, newSbomFilePath)) {
+                    println("Renamed to bom.xml")
+                    LOG.info("Renamed to $newSbomFilePath")
+                }else {
+                    println("[ERROR] Failed to rename BOM file to bom.xml")
+                    LOG.error("Failed to rename BOM file to bom.xml")
                 }
             }
         }
@@ -66,7 +102,7 @@ object CycloneDxMavenInvoker {
         val bomFile = File(mavenProjectDir, outputDir + "/bom.xml")
         if (!bomFile.exists()) {
             LOG.warn("bom.xml not found after the generation: $bomFilePath")
-            throw RuntimeException("SBOM not found after generation.")
+            throw RuntimeException("SBOM not found after generation. Maven output:\n${run.tail}")
 
         }
 
@@ -75,7 +111,185 @@ object CycloneDxMavenInvoker {
         return bomFile
     }
 
+    /**
+     * Runs the CycloneDX `makeBom` goal, which writes one BOM per reactor module into the module's build directory,
+     * from the reactor root. With [modules] (module directories relative to [reactorDir]) only those modules, the
+     * modules they depend on and the modules depending on them are built, so their fragments can be refreshed
+     * without resolving the whole reactor.
+     * @return the BOM files Maven reported writing
+     */
+    fun generateModuleBoms(reactorDir: File, modules: List<String>?, indicator: ProgressIndicator? = null): List<File> {
+        val mvnCmd = getMvnCmd(reactorDir)
+        val command = mutableListOf(
+            mvnCmd,
+            "-B",
+            "org.cyclonedx:cyclonedx-maven-plugin:2.9.1:makeBom",
+            "-DoutputFormat=xml",
+            "-DoutputName=$MODULE_BOM_NAME",
+            "-DincludeBomSerialNumber=false",
+        )
+        if (!modules.isNullOrEmpty()) {
+            // -am keeps the reactor modules they depend on resolvable without a prior `mvn install`
+            command += listOf("-pl", modules.joinToString(","), "-am", "-amd")
+        }
+        LOG.info("Generating module SBOMs for ${modules ?: "all modules"}: $command")
+        val boms = mutableListOf<File>()
+        val run = runOfflineFirst(command, reactorDir, reactorDir, indicator, isMvnd(mvnCmd)) { line ->
+            if (line.contains(BOM_WRITTEN_MARKER)) boms += File(line.substringAfter(BOM_WRITTEN_MARKER).trim())
+        }
+        if (run.exitCode != 0) {
+            LOG.error("Maven module SBOM generation failed with exit code ${run.exitCode}")
+            throw RuntimeException("Error during the generation of the module SBOMs:\n${run.tail}")
+        }
+        // A retried run reports the BOMs the failed attempt already wrote again
+        return boms.distinct().filter { it.isFile }
+    }
+
+    private const val MODULE_BOM_NAME = "license-tool-bom"
+    private const val BOM_WRITTEN_MARKER = "CycloneDX: Writing and validating BOM (XML):"
+
+    // Hard limit for one Maven run, 0 disables it; a cold first run may download a lot
+    private val timeoutSeconds: Long = System.getProperty("licenseTool.maven.timeoutSeconds", "900").toLongOrNull() ?: 900
+    // How much of the end of the output is kept for error messages
+    private val outputTailChars: Int = 1024 * (System.getProperty("licenseTool.maven.outputTailKb", "16").toIntOrNull() ?: 16)
+
+    private const val SEED_MARKER = "maven-seeded"
+
+    internal class MavenRun(val exitCode: Int, val tail: String)
+
+    /**
+     * Runs [command] according to [offline]. [projectDir] holds the seed marker: a successful online run leaves all
+     * the project needs (the CycloneDX plugin included) in the local repository, so later runs can stay offline.
+     */
+    internal fun runOfflineFirst(command: List<String>, dir: File, projectDir: File, indicator: ProgressIndicator?,
+                                 warm: Boolean, offline: OfflineMode = this.offline, localRepo: String? = this.localRepo,
+                                 timeoutSeconds: Long = this.timeoutSeconds, onLine: (String) -> Unit): MavenRun {
+        val base = if (localRepo != null) command + "-Dmaven.repo.local=$localRepo" else command
+        val offlineCommand = listOf(base.first(), "-o") + base.drop(1)
+        val marker = File(projectDir, ".license-tool/$SEED_MARKER")
+        // The marker records the repository it was seeded for, another licenseTool.maven.localRepo starts unseeded
+        val seeded = marker.isFile && runCatching { marker.readText() }.getOrNull() == (localRepo ?: "")
+        val offlineFirst = offline == OfflineMode.ALWAYS || (offline == OfflineMode.AUTO && seeded)
+
+        if (offlineFirst) {
+            val run = runMaven(offlineCommand, dir, indicator, warm, timeoutSeconds, onLine)
+            if (run.exitCode == 0 || offline == OfflineMode.ALWAYS) return run
+            // Typically a dependency added since the repository was seeded
+            LOG.info("Offline Maven run failed with exit code ${run.exitCode}, retrying online")
+        }
+        try {
+            val run = runMaven(base, dir, indicator, warm, timeoutSeconds, onLine)
+            if (run.exitCode == 0 && offline == OfflineMode.AUTO && !seeded) {
+                try {
+                    marker.parentFile.mkdirs()
+                    marker.writeText(localRepo ?: "")
+                    LOG.info("Local Maven repository seeded for ${projectDir.absolutePath}, later runs go offline first")
+                } catch (e: java.io.IOException) {
+                    LOG.warn("Could not write the Maven seed marker: ${e.message}")
+                }
+            }
+            return run
+        } catch (e: MavenTimeoutException) {
+            if (offline != OfflineMode.AUTO || offlineFirst) throw e
+            LOG.warn("Online Maven run timed out, retrying offline")
+            return runMaven(offlineCommand, dir, indicator, warm, timeoutSeconds, onLine)
+        }
+    }
+
+    /** The last [maxChars] characters of the output, in whole lines. */
+    internal class OutputTail(private val maxChars: Int) {
+        private val lines = ArrayDeque<String>()
+        private var chars = 0
+        private var dropped = 0L
+
+        @Synchronized
+        fun add(line: String) {
+            // A single huge line (e.g. a progress bar without line breaks) must not grow the buffer either
+            val kept = if (line.length > maxChars) line.takeLast(maxChars) else line
+            lines.addLast(kept)
+            chars += kept.length + 1
+            while (chars > maxChars && lines.size > 1) {
+                chars -= lines.removeFirst().length + 1
+                dropped++
+            }
+        }
+
+        @Synchronized
+        override fun toString(): String =
+            (if (dropped > 0) "[... $dropped earlier lines omitted]\n" else "") + lines.joinToString("\n")
+    }
+
+    /**
+     * Starts Maven and drains its output on a separate thread while waiting for it, so a build that logs more than
+     * the pipe buffer holds never blocks. Each line goes to [onLine] as it arrives; only the tail is kept.
+     */
+    internal fun runMaven(command: List<String>, dir: File, indicator: ProgressIndicator?, warm: Boolean,
+                          timeoutSeconds: Long = this.timeoutSeconds, onLine: (String) -> Unit = {}): MavenRun {
+        val process = ProcessBuilder(command)
+            .directory(dir)
+            .redirectErrorStream(true)
+            .start()
+        val tail = OutputTail(outputTailChars)
+        val reader = Thread({
+            try {
+                process.inputStream.bufferedReader().useLines { lines ->
+                    lines.forEach {
+                        tail.add(it)
+                        onLine(it)
+                    }
+                }
+            } catch (e: java.io.IOException) {
+                // The stream is closed when the process is killed
+                LOG.debug("Maven output stream closed: ${e.message}")
+            }
+        }, "license-tool-maven-output")
+        reader.isDaemon = true
+        reader.start()
+        val exitCode = waitForOrCancel(process, indicator, warm, timeoutSeconds, tail)
+        // The last lines may still be buffered when the process has exited; a forked child that inherited the pipe
+        // can keep it open longer, so the reader is left to finish on its own after a while
+        reader.join(TimeUnit.SECONDS.toMillis(5))
+        if (reader.isAlive) LOG.warn("Maven output still open after the process exited, not waiting for it")
+        return MavenRun(exitCode, tail.toString())
+    }
+
+    private fun waitForOrCancel(process: Process, indicator: ProgressIndicator?, warm: Boolean, timeoutSeconds: Long,
+                                tail: OutputTail): Int {
+        val deadline = if (timeoutSeconds > 0) System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds) else null
+        while (!process.waitFor(100, TimeUnit.MILLISECONDS)) {
+            if (indicator?.isCanceled == true) {
+                LOG.info("SBOM generation cancelled, killing Maven process ${process.pid()}")
+                // The mvnd client may still be the parent of a daemon it just started; the daemon cancels the build
+                // when its client goes away, so only the client is killed and the daemon stays warm
+                if (warm) process.destroyForcibly() else destroyProcessTree(process)
+                throw ProcessCanceledException()
+            }
+            if (deadline != null && System.nanoTime() - deadline > 0) {
+                LOG.error("Maven did not finish within $timeoutSeconds seconds, killing process ${process.pid()}")
+                if (warm) process.destroyForcibly() else destroyProcessTree(process)
+                throw MavenTimeoutException("Maven did not finish within $timeoutSeconds seconds " +
+                        "(licenseTool.maven.timeoutSeconds). Last output:\n$tail")
+            }
+        }
+        return process.exitValue()
+    }
+
+    // Maven wrappers and mvn.cmd fork the actual JVM, so kill the descendants as well as the process itself
+    private fun destroyProcessTree(process: Process) {
+        process.descendants().forEach { it.destroyForcibly() }
+        process.destroyForcibly()
+    }
+
     fun getMvnCmd(mavenProjectDir: File) : String
+    {
+        if (mode == MavenMode.WARM || mode == MavenMode.AUTO && getMvnLocal(mavenProjectDir) == null) {
+            mvndCmd?.let { return it }
+            if (mode == MavenMode.WARM) LOG.warn("licenseTool.maven.mode=warm but mvnd was not found, using a cold Maven run")
+        }
+        return getMvnColdCmd(mavenProjectDir)
+    }
+
+    fun getMvnColdCmd(mavenProjectDir: File) : String
     {
         return getMvnLocal(mavenProjectDir) //First, try getting a local maven installation from the target repo
             ?: getMvnFromHome() //If it's not there, look for MAVEN_HOME or M2_HOME environment variables
@@ -104,6 +318,27 @@ object CycloneDxMavenInvoker {
         return null
     }
 
+    fun getMvndFromHome() : String?
+    {
+        val mvndHome = System.getenv("MVND_HOME") ?: return null
+        val mvnd = File(mvndHome, "bin/${mvndName()}")
+        return if (mvnd.exists() && mvnd.canExecute()) mvnd.absolutePath else null
+    }
+
+    fun getMvndFromPath() : String?
+    {
+        val path = System.getenv("PATH") ?: return null
+        return path.split(File.pathSeparator)
+            .filter { it.isNotBlank() }
+            .map { File(it, mvndName()) }
+            .firstOrNull { it.exists() && it.canExecute() }
+            ?.absolutePath
+    }
+
+    fun isMvnd(mvnCmd: String): Boolean = File(mvnCmd).name == mvndName()
+
+    private fun mvndName() = if (isWindows()) "mvnd.cmd" else "mvnd"
+
     fun getMvnByOs() : String
     {
         return if (isWindows()) "mvn.cmd" else "mvn"
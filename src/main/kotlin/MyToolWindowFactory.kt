@@ -15,6 +15,9 @@ import com.intellij.util.ui.JBUI
 import controller.LicensingController
 import java.awt.event.KeyAdapter
 import java.awt.event.KeyEvent
+import java.util.concurrent.CancellationException
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
 import javax.swing.JButton
 import javax.swing.SwingUtilities
 import com.example.my_plugin.license.LicenseQuestionnaireDialog
@@ -23,22 +26,17 @@ import com.intellij.openapi.observable.properties.PropertyGraph
 import com.intellij.ui.dsl.builder.AlignX
 import com.intellij.ui.dsl.builder.bindItem
 
-import javax.swing.JEditorPane
-import javax.swing.event.HyperlinkEvent
-import java.time.Instant
-import java.time.ZoneId
-import java.time.format.DateTimeFormatter
-
-
 
 import com.intellij.openapi.Disposable
+import com.intellij.openapi.util.Disposer
 import org.slf4j.Logger
 
 class MyToolWindowFactory : ToolWindowFactory {
 
     // Encapsulate per-project UI and state
     class ChatUi(private val project: Project) : Disposable {
-        var chatView: JEditorPane? = null
+        // Virtualized message list, see ChatTranscript
+        private val transcript = ChatTranscript(project).also { Disposer.register(this, it) }
         var inputArea: JBTextArea? = null
         var loaderLabel: JBLabel? = null
         var submitButton: JButton? = null
@@ -46,145 +44,77 @@ class MyToolWindowFactory : ToolWindowFactory {
         private val propertyGraph = PropertyGraph()
         val selectedModelProp = propertyGraph.property("gpt-4o")
 
+        // Prompts still waiting for an answer, cancelled when the tool window goes away
+        private val pendingRequests: MutableSet<CompletableFuture<String>> = ConcurrentHashMap.newKeySet()
+
         // Add a reference to the Java listener so we can unregister it on dispose
         private var surveyListener: LicenseQuestionnaireListener? = null
 
-        private data class ChatMessage(val role: String, val text: String, val model: String? = null, val ts: Long = System.currentTimeMillis())
-        private val messages = mutableListOf<ChatMessage>()
+        private val LOG: Logger = LogInitializer.getLogger(MyToolWindowFactory::class.java)
 
-        private val tsFmt: DateTimeFormatter = DateTimeFormatter.ofPattern("HH:mm").withZone(ZoneId.systemDefault())
+        companion object {
+            // Upper bound on how often a streaming reply re-renders its message
+            private const val STREAM_REPAINT_MS = 50
+        }
 
-        private val LOG: Logger = LogInitializer.getLogger(MyToolWindowFactory::class.java)
 
+        private fun addMessage(role: String, text: String, model: String? = null): Int {
+            LOG.info("Adding message to UI $role: $text")
+            return transcript.add(role, text, model)
+        }
+
+        // Replaces the text of a message that is still being streamed in
+        private fun updateMessage(index: Int, text: String) {
+            transcript.update(index, text)
+        }
 
-        private fun escapeHtml(s: String): String = s
-            .replace("&", "&amp;")
-            .replace("<", "&lt;")
-            .replace(">", "&gt;")
-            .replace("\n", "<br>")
-
-        private fun markdownToHtmlBasic(src: String): String {
-            val codeBlocks = mutableListOf<String>()
-            var text = src
-            val fenceRegex = Regex("```(.*?)```", RegexOption.DOT_MATCHES_ALL)
-            text = fenceRegex.replace(text) { m ->
-                val idx = codeBlocks.size
-                codeBlocks += m.groupValues[1]
-                "@@CODEBLOCK_$idx@@"
+        /**
+         * A bot reply that is streamed into the chat. Chunks arrive on a background thread and are only buffered
+         * there; a Swing timer flushes the buffer to the view at most every STREAM_REPAINT_MS, so a fast model
+         * does not trigger a re-render per token.
+         */
+        private inner class StreamingReply {
+            private val text = StringBuilder()
+            private var dirty = false
+            private var index = -1
+            private val repaintTimer = Timer(STREAM_REPAINT_MS) { flush() }
+
+            fun start() = SwingUtilities.invokeLater {
+                index = addMessage("bot", "…")
+                repaintTimer.start()
             }
-            text = escapeHtml(text)
-            text = text.replace(Regex("`([^`]+)`")) { m -> "<span class='code'>" + m.groupValues[1] + "</span>" }
-            text = text.replace(Regex("\\*\\*([^*]+)\\*\\*")) { m -> "<b>" + m.groupValues[1] + "</b>" }
-            text = text.replace(Regex("(?<!\\*)\\*([^*]+)\\*(?!\\*)")) { m -> "<i>" + m.groupValues[1] + "</i>" }
-            text = text.lines().joinToString("\n") { line ->
-                when {
-                    line.startsWith("### ") -> "<b>" + line.removePrefix("### ") + "</b>"
-                    line.startsWith("## ")  -> "<b>" + line.removePrefix("## ") + "</b>"
-                    line.startsWith("# ")   -> "<b>" + line.removePrefix("# ") + "</b>"
-                    else -> line
-                }
+
+            fun append(chunk: String) = synchronized(text) {
+                text.append(chunk)
+                dirty = true
             }
-            val lines = text.split("\n")
-            val out = StringBuilder()
-            var inList = false
-            for (ln in lines) {
-                val trimmed = ln.trim()
-                val isBullet = trimmed.startsWith("- ") || trimmed.startsWith("* ")
-                if (isBullet && !inList) { out.append("<ul>"); inList = true }
-                if (!isBullet && inList) { out.append("</ul>"); inList = false }
-                if (isBullet) out.append("<li>").append(trimmed.substring(2)).append("</li>")
-                else out.append(ln).append("\n")
+
+            // The final response replaces whatever was streamed (e.g. text emitted before a tool call)
+            fun finish(finalText: String) = SwingUtilities.invokeLater {
+                repaintTimer.stop()
+                synchronized(text) {
+                    text.setLength(0)
+                    text.append(finalText)
+                    dirty = true
+                }
+                flush()
+                LOG.info("Streamed reply complete: $finalText")
             }
-            if (inList) out.append("</ul>")
-            text = out.toString()
 
-            // Replace placeholders with escaped code blocks (use local vars so static analysis sees usage)
-            codeBlocks.forEachIndexed { idx, raw ->
-                val replaced = "<pre>" + escapeHtml(raw.trim()) + "</pre>"
-                text = text.replace("@@CODEBLOCK_${'$'}idx@@", replaced)
+            // An abandoned reply (e.g. the tool window was disposed) keeps what was shown; the timer must not
+            // keep firing, or hold on to the view
+            fun cancel() = SwingUtilities.invokeLater {
+                repaintTimer.stop()
             }
-            return text
-        }
 
-        private fun renderChatHtml(): String {
-            val sb = StringBuilder()
-            sb.append(
-                """
-                <html>
-                <head>
-                  <style>
-                    body { font-family: sans-serif; font-size: 12px; margin: 0; }
-                    .wrap { padding: 8px; }
-                    .msg { padding: 8px 10px; margin: 6px 0; border: 1px solid #e1e3e6; background: #ffffff; }
-                    .user  { background: #dfefff; }
-                    .bot   { background: #f5f6f7; }
-                    .meta { font-size: 10px; color: #6b6f76; margin-top: 4px; }
-                    .name { font-size: 11px; font-weight: bold; margin-bottom: 4px; }
-                    .code { font-family: Monospaced; background:#ffffff; border:1px solid #e1e3e6; padding:2px 4px; }
-                    pre { font-family: Monospaced; background:#ffffff; border:1px solid #e1e3e6; padding:8px; }
-                    a { color:#0b6eff; text-decoration:none; }
-                  </style>
-                </head>
-                <body><div class='wrap'>
-                """.trimIndent()
-            )
-            for (m in messages) {
-                val roleClass = if (m.role == "user") "user" else "bot"
-                val time = tsFmt.format(Instant.ofEpochMilli(m.ts))
-                val modelStr = m.model?.let { " — <span class='meta'>" + escapeHtml(it) + "</span>" } ?: ""
-                val htmlText = markdownToHtmlBasic(m.text)
-                val name = if (m.role == "user") "You" else "Bot"
-                val nameColor = if (m.role == "user") "#0b3d62" else "#2b2d30"
-                val avatarLetter = if (m.role == "user") "U" else "B"
-                val avatarBg = if (m.role == "user") "#0b6eff" else "#6b6f76"
-                val rowHtml = if (m.role == "user") {
-                    // User on the right: message cell first, avatar cell on the far right
-                    """
-                    <table width='100%' cellspacing='4' cellpadding='0'>
-                      <tr>
-                        <td width='*' align='right'>
-                          <div class='msg $roleClass'>
-                            <div class='name' style='color:$nameColor;'>$name</div>
-                            $htmlText
-                            <div class='meta'>$time$modelStr</div>
-                          </div>
-                        </td>
-                        <td width='28' align='center' valign='top' bgcolor='$avatarBg'>
-                          <font color='#ffffff'><b>$avatarLetter</b></font>
-                        </td>
-                      </tr>
-                    </table>
-                    """.trimIndent()
-                } else {
-                    // Bot on the left: avatar first, message next
-                    """
-                    <table width='100%' cellspacing='4' cellpadding='0'>
-                      <tr>
-                        <td width='28' align='center' valign='top' bgcolor='$avatarBg'>
-                          <font color='#ffffff'><b>$avatarLetter</b></font>
-                        </td>
-                        <td width='*'>
-                          <div class='msg $roleClass'>
-                            <div class='name' style='color:$nameColor;'>$name</div>
-                            $htmlText
-                            <div class='meta'>$time$modelStr</div>
-                          </div>
-                        </td>
-                      </tr>
-                    </table>
-                    """.trimIndent()
+            private fun flush() {
+                val current = synchronized(text) {
+                    if (!dirty) return
+                    dirty = false
+                    text.toString()
                 }
-                sb.append(rowHtml)
+                if (index >= 0) updateMessage(index, current)
             }
-            sb.append("</div></body></html>")
-            return sb.toString()
-        }
-
-        private fun addMessage(role: String, text: String, model: String? = null) {
-            LOG.info("Adding message to UI $role: $text")
-            messages += ChatMessage(role, text, model)
-            chatView?.text = renderChatHtml()
-            chatView?.caretPosition = chatView?.document?.length ?: 0
         }
 
         fun appendToChatHistory(text: String) {
@@ -244,18 +174,35 @@ class MyToolWindowFactory : ToolWindowFactory {
             //startLoadingAnimation()
             LOG.info("Submit message to the LLM: $inputText")
             startSubmitAnimation()
-            ApplicationManager.getApplication().executeOnPooledThread {
-                try {
-                    val selectedModel = selectedModelProp.get()
-                    val chatbotSession = LicensingController.getChatbotSession(selectedModel)
-                    val response = chatbotSession.submitPrompt(inputText)
-                    SwingUtilities.invokeLater { addMessage("bot", response) }
-                } catch (t: Throwable) {
-                    SwingUtilities.invokeLater { addMessage("bot", "(error) ${'$'}{t.message}") }
-                    LOG.error("Error during message submission: {}", t.message)
-                } finally {
+            val reply = StreamingReply()
+            reply.start()
+            val selectedModel = selectedModelProp.get()
+            val chatbotSession = LicensingController.getChatbotSession(project, selectedModel)
+            var firstChunk = true
+            // No thread waits for the answer; the future completes when it arrives
+            val request = chatbotSession.submitPromptAsync(inputText) { chunk ->
+                // The reply itself shows progress from here on
+                if (firstChunk) {
+                    firstChunk = false
                     stopAnimation()
                 }
+                reply.append(chunk)
+            }
+            pendingRequests += request
+            request.whenComplete { response, t ->
+                pendingRequests -= request
+                when (t) {
+                    null -> reply.finish(response)
+                    is CancellationException -> {
+                        reply.cancel()
+                        LOG.info("Message submission cancelled")
+                    }
+                    else -> {
+                        reply.finish("(error) ${t.message}")
+                        LOG.error("Error during message submission: {}", t.message)
+                    }
+                }
+                stopAnimation()
             }
         }
 
@@ -269,19 +216,7 @@ class MyToolWindowFactory : ToolWindowFactory {
                         }.align(AlignX.RIGHT)
                     }
                     row {
-                        chatView = JEditorPane("text/html", "").apply {
-                            isEditable = false
-                            putClientProperty(JEditorPane.HONOR_DISPLAY_PROPERTIES, true)
-                            addHyperlinkListener { ev ->
-                                if (ev.eventType == HyperlinkEvent.EventType.ACTIVATED) {
-                                    java.awt.Desktop.getDesktop().browse(ev.url.toURI())
-                                }
-                            }
-                            text = ""
-                        }
-
-                        val chatScrollPane = JBScrollPane(chatView).apply { border = JBUI.Borders.empty() }
-                        cell(chatScrollPane).resizableColumn().align(Align.FILL)
+                        cell(transcript.component).resizableColumn().align(Align.FILL)
                     }.resizableRow()
                     row {
                         loaderLabel = JBLabel("Loading...").apply { isVisible = false }
@@ -409,6 +344,7 @@ class MyToolWindowFactory : ToolWindowFactory {
         }
 
         override fun dispose() {
+            pendingRequests.forEach { it.cancel(true) }
             try { loadingTimer?.stop() } catch (_: Throwable) {}
             loadingTimer = null
             // make sure to unregister listener if still registered
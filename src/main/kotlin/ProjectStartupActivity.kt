@@ -83,7 +83,9 @@ class ProjectStartupActivity : ProjectActivity {
                 if (hasPom) {
                     val pomPath = baseDir.walkTopDown().firstOrNull { it.name == "pom.xml" }?.absolutePath ?: "N/A"
                     val sbomFile = File(base, ".license-tool/bom.xml")
-                    if (!sbomFile.exists()) {
+                    // Runs that used the IDE model keep only the snapshot
+                    val snapshotFile = File(base, ".license-tool/${SbomSnapshot.FILE_NAME}")
+                    if (!sbomFile.exists() && !snapshotFile.exists()) {
                         // run SBOM generation off the EDT
                         ApplicationManager.getApplication().executeOnPooledThread {
                             try {
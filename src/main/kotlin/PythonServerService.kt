@@ -76,6 +76,8 @@ class PythonServerService(private val project: Project) : Disposable {
             }
             override fun processTerminated(event: ProcessEvent) {
                 log.info("Python server terminated with exit code ${event.exitCode}")
+                // Drop pooled connections to the old server rather than waiting for them to fail
+                chatbot.JavaSocketClient.closeConnections()
                 println("Python server terminated with exit code ${event.exitCode}")
             }
         })
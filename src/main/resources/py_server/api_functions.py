@@ -4,6 +4,12 @@ This file defines the functions that are callable from Java.
 """
 
 import json
+import logging
+import os
+import threading
+import uuid
+from collections import OrderedDict
+from concurrent.futures import ThreadPoolExecutor
 from utils import promptOllama
 from utils import promptOpenAI
 from ollama import Client
@@ -12,11 +18,72 @@ from config import CONFIG
 from model_list import models
 from function_calling import TOOLS_SCHEMA, getFunctionArguments, TOOL_MAPPING
 
-def promptModel(host, model, prompt, history):
+def promptModel(host, model, prompt, history, on_chunk=None):
     if model in models["ollama"]:
-        return promptOllama(host, model, prompt, history)
+        return promptOllama(host, model, prompt, history, on_chunk)
     elif model in models["openai"]:
-        return promptOpenAI(model, prompt, history)
+        return promptOpenAI(model, prompt, history, on_chunk)
+
+# Upper bound on the prompts of one batch that are sent to the provider at the same time
+BATCH_WORKERS = int(os.environ.get("LICENSE_TOOL_BATCH_WORKERS", "8"))
+
+def promptModelBatch(host, model, prompts, history):
+    """Answers independent prompts that share one history (typically just a system prompt), dispatching them
+    concurrently. Returns the answers in prompt order, with None for a prompt that failed."""
+    def answer(prompt):
+        try:
+            # promptModel appends to the list it gets, so every prompt needs its own copy
+            return promptModel(host, model, prompt, list(history))
+        except Exception:
+            logging.getLogger("python_server").exception("Batch prompt failed")
+            return None
+    if not prompts:
+        return []
+    with ThreadPoolExecutor(max_workers=min(BATCH_WORKERS, len(prompts)), thread_name_prefix="batch") as pool:
+        return list(pool.map(answer, prompts))
+
+# Conversation histories held for the Java side, so each prompt only has to carry the new entries.
+# Least recently used sessions are dropped beyond MAX_SESSIONS; Java then replays its copy.
+MAX_SESSIONS = 256
+SESSIONS = OrderedDict()
+SESSIONS_LOCK = threading.Lock()
+
+class UnknownSession(Exception):
+    """The session does not exist (e.g. after a server restart) or is out of sync with the client."""
+
+def openSession(history):
+    session_id = uuid.uuid4().hex
+    with SESSIONS_LOCK:
+        SESSIONS[session_id] = list(history)
+        while len(SESSIONS) > MAX_SESSIONS:
+            SESSIONS.popitem(last=False)
+    return session_id
+
+def promptSession(session_id, host, model, prompt, base, new_entries, on_chunk=None):
+    """Prompts with the session's history. new_entries are appended after the first `base` entries, which the
+    client knows the server already has; anything beyond them was left by a request whose response was lost."""
+    snapshot = syncSession(session_id, base, new_entries)
+    return promptModel(host, model, prompt, snapshot, on_chunk)
+
+def promptSessionBatch(session_id, host, model, prompts, base, new_entries):
+    """promptModelBatch on top of the session's history, synced as in promptSession."""
+    snapshot = syncSession(session_id, base, new_entries)
+    return promptModelBatch(host, model, prompts, snapshot)
+
+def syncSession(session_id, base, new_entries):
+    with SESSIONS_LOCK:
+        history = SESSIONS.get(session_id)
+        if history is None or len(history) < base:
+            raise UnknownSession(session_id)
+        SESSIONS.move_to_end(session_id)
+        del history[base:]
+        history.extend(new_entries)
+        # promptModel appends to the list it gets, so it must not see the stored one
+        return list(history)
+
+def closeSession(session_id):
+    with SESSIONS_LOCK:
+        SESSIONS.pop(session_id, None)
 
 def setWorkingDirectory(directory):
     CONFIG.setCurrentWorkingDirectory(directory)
@@ -1,5 +1,6 @@
 #!/usr/bin/env python3
-import socket, json, threading
+import socket, json, threading, struct, zlib
+from concurrent.futures import ThreadPoolExecutor
 import api_functions
 import inspect, traceback
 import os
@@ -8,6 +9,10 @@ from logging.handlers import RotatingFileHandler
 
 FUNCTIONS = {name:func for name, func in inspect.getmembers(api_functions, inspect.isfunction)}
 
+# Requests that carry an "id" may be answered out of order, so they run here instead of blocking their connection
+REQUEST_WORKERS = ThreadPoolExecutor(max_workers=int(os.environ.get("LICENSE_TOOL_WORKERS", "16")),
+                                     thread_name_prefix="request")
+
 def setup_logging():
     cwd = None
     try:
@@ -37,56 +42,170 @@ def setup_logging():
 
 logger = setup_logging()
 
-def handle_request(json_request):
+def handle_request(json_request, on_chunk=None):
     try:
         func = json_request.get("function")
         args = json_request.get("args", [])
         if func in FUNCTIONS:
-            result = FUNCTIONS.get(func)(*args)
+            function = FUNCTIONS.get(func)
+            if on_chunk is not None and "on_chunk" in inspect.signature(function).parameters:
+                result = function(*args, on_chunk=on_chunk)
+            else:
+                result = function(*args)
             return {"result": result}
         else:
             return {"error": "Unknown function"}
+    except api_functions.UnknownSession:
+        logger.info("Unknown or out of sync session, client will replay it")
+        return {"error": "unknown_session"}
     except Exception as e:
         logger.exception("Exception while handling request: %s", e.__traceback__)
         traceback.print_exception(type(e), e, e.__traceback__)
         return {"result": "Error... please check server console for more details"}
 
+# Binary framing, negotiated per connection with a newline-delimited hello:
+#   client -> {"hello": {"framing": ["binary-v1"], "compression": ["zlib"]}}
+#   server -> {"hello": {"framing": "binary-v1", "compression": ["zlib"]}}
+# after which every message is a frame: 4-byte big-endian payload length, 1 flags byte, payload (UTF-8 JSON).
+# Clients that start with anything else keep the original newline-delimited JSON protocol.
+FRAMING = "binary-v1"
+FLAG_ZLIB = 0x01
+HEADER = struct.Struct(">IB")
+MAX_FRAME = 256 * 1024 * 1024
+COMPRESS_THRESHOLD = 64 * 1024
+
+class ClientChannel:
+    def __init__(self, conn, addr):
+        self.conn = conn
+        self.addr = addr
+        self.pending = bytearray()
+        self.binary = False
+        self.zlib = False
+        # Connections are long-lived and may have several requests in flight, so responses must not interleave
+        self.send_lock = threading.Lock()
+
+    def read_line(self):
+        """Next newline-terminated message without the newline, or None at end of stream."""
+        while True:
+            i = self.pending.find(b"\n")
+            if i >= 0:
+                line = bytes(self.pending[:i])
+                del self.pending[:i + 1]
+                return line
+            data = self.conn.recv(65536)
+            if not data:
+                return None
+            self.pending += data
+
+    def read_exact(self, n):
+        """Exactly n bytes read into one buffer, or None at end of stream."""
+        out = bytearray(n)
+        view = memoryview(out)
+        k = min(n, len(self.pending))
+        view[:k] = self.pending[:k]
+        del self.pending[:k]
+        while k < n:
+            r = self.conn.recv_into(view[k:], n - k)
+            if r == 0:
+                return None
+            k += r
+        return out
+
+    def read_message(self):
+        """Next message payload as bytes, or None at end of stream."""
+        if not self.binary:
+            return self.read_line()
+        header = self.read_exact(HEADER.size)
+        if header is None:
+            return None
+        length, flags = HEADER.unpack(header)
+        if length > MAX_FRAME:
+            raise ValueError(f"frame of {length} bytes exceeds the limit")
+        payload = self.read_exact(length)
+        if payload is None:
+            return None
+        return zlib.decompress(payload) if flags & FLAG_ZLIB else payload
+
+    def send(self, obj):
+        data = json.dumps(obj).encode("utf-8")
+        if self.binary:
+            flags = 0
+            if self.zlib and len(data) > COMPRESS_THRESHOLD:
+                data = zlib.compress(data)
+                flags |= FLAG_ZLIB
+            data = HEADER.pack(len(data), flags) + data
+        else:
+            data += b"\n"
+        with self.send_lock:
+            self.conn.sendall(data)
+
+    def negotiate(self, hello):
+        offered = hello.get("framing", [])
+        self.zlib = "zlib" in hello.get("compression", [])
+        accepted = FRAMING if FRAMING in offered else None
+        self.send({"hello": {"framing": accepted, "compression": ["zlib"] if self.zlib else []}})
+        self.binary = accepted is not None
+        logger.info("[=] Client %s uses %s framing", self.addr, accepted or "newline")
+
+def respond(channel, json_request):
+    on_chunk = None
+    if json_request.get("stream") and "id" in json_request:
+        # Partial output goes out as {"id", "chunk"} messages ahead of the final {"id", "result"}
+        request_id = json_request["id"]
+        on_chunk = lambda text: channel.send({"id": request_id, "chunk": text})
+    response = handle_request(json_request, on_chunk)
+    if "id" in json_request:
+        response["id"] = json_request["id"]
+    logger.info("[<] Responding to %s: %s", channel.addr, response)
+    try:
+        channel.send(response)
+    except OSError as e:
+        logger.warning("[!] Could not respond to %s: %s", channel.addr, e)
+
 def handle_client(conn, addr):
     print(f"[+] Connected by {addr}")
     logger.info("[+] Connected by %s", addr)
+    channel = ClientChannel(conn, addr)
+    first = True
     with conn:
-        buffer = ""
         while True:
             try:
-                data = conn.recv(1024)
-                if not data:
+                message = channel.read_message()
+                if message is None:
                     logger.info("[-] Client %s disconnected", addr)
                     print(f"[-] Client {addr} disconnected")
                     break
 
-                buffer += data.decode()
-
-                while "\n" in buffer:
-                    line, buffer = buffer.split("\n", 1)
-                    json_request = json.loads(line)
-                    logger.info("[>] Received from %s: %s", addr, json_request)
-                    print(f"[>] Received from {addr}: {json_request}")
-                    response = handle_request(json_request)
-                    logger.info("[<] Responding to %s: %s", addr, response)
-                    response_str = json.dumps(response) + "\n"
-                    conn.sendall(response_str.encode())
+                json_request = json.loads(message)
+                if first and isinstance(json_request, dict) and "hello" in json_request:
+                    first = False
+                    channel.negotiate(json_request["hello"])
+                    continue
+                first = False
+                logger.info("[>] Received from %s: %s", addr, json_request)
+                print(f"[>] Received from {addr}: {json_request}")
+                if "id" in json_request:
+                    REQUEST_WORKERS.submit(respond, channel, json_request)
+                else:
+                    respond(channel, json_request)
             except ConnectionResetError:
                 logger.warning("[!] Client %s forcibly closed the connection", addr)
                 print(f"[!] Client {addr} forcibly closed the connection")
                 break
-            except json.JSONDecodeError:
+            except (json.JSONDecodeError, UnicodeDecodeError):
                 logger.exception("Unexpected error handling client %s", addr)
                 print(f"[!] Invalid JSON from {addr}")
-                conn.sendall(b'{"error": "Invalid JSON"}\n')
+                channel.send({"error": "Invalid JSON"})
+            except (ValueError, zlib.error) as e:
+                # A broken frame leaves the stream out of sync, so the connection cannot be used any further
+                logger.warning("[!] Invalid frame from %s: %s", addr, e)
+                break
 
 
 def startServer(host='localhost', port=9999):
     server_socket = socket.socket(socket.AF_INET, socket.SOCK_STREAM)
+    # Allow an immediate restart while connections of the previous instance are still in TIME_WAIT
+    server_socket.setsockopt(socket.SOL_SOCKET, socket.SO_REUSEADDR, 1)
     server_socket.bind((host, port))
     server_socket.listen()
     print(f"[o] Python server listening on {host}:{port}")
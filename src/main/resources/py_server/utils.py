@@ -13,9 +13,11 @@ def getAPIKey():
     with open(path_to_key, "r", encoding="utf-8") as file:
         return file.read()
 
-def promptOpenAI(model, prompt, history):
+def promptOpenAI(model, prompt, history, on_chunk=None):
     client = OpenAI(api_key=getAPIKey())
     history.append({'role':'user',"content":prompt})
+    if on_chunk is not None:
+        return streamOpenAI(client, model, history, on_chunk)
     response = client.chat.completions.create(model=model, messages=history, tools=TOOLS_SCHEMA)
     response = json.loads(response.to_json())
     response = response.get("choices")[0]
@@ -36,9 +38,48 @@ def promptOpenAI(model, prompt, history):
         response = response["choices"][0]
     return response["message"]["content"]
 
-def promptOllama(host, model, prompt, history):
+def streamOpenAI(client, model, history, on_chunk):
+    content, tool_calls = streamOpenAICompletion(client, on_chunk, model=model, messages=history, tools=TOOLS_SCHEMA)
+    if not tool_calls:
+        return content
+    for call in tool_calls:
+        func_name = call["name"]
+        func = TOOL_MAPPING.get(func_name)
+        args = json.loads(call["arguments"] or "{}")
+        args = getFunctionArguments(func_name, args)
+        function_response = func(*args)
+        history.append({
+            "role": "user",
+            "content": f"Use this information in your response: {function_response}",
+        })
+    content, _ = streamOpenAICompletion(client, on_chunk, model=model, messages=history)
+    return content
+
+def streamOpenAICompletion(client, on_chunk, **kwargs):
+    """Streams one completion, emitting content as it arrives. Tool calls arrive as fragments spread over
+    several chunks and are reassembled by their index."""
+    parts = []
+    calls = {}
+    for chunk in client.chat.completions.create(stream=True, **kwargs):
+        if not chunk.choices:
+            continue
+        delta = chunk.choices[0].delta
+        if delta.content:
+            parts.append(delta.content)
+            on_chunk(delta.content)
+        for tool_call in delta.tool_calls or []:
+            call = calls.setdefault(tool_call.index, {"name": "", "arguments": ""})
+            if tool_call.function and tool_call.function.name:
+                call["name"] += tool_call.function.name
+            if tool_call.function and tool_call.function.arguments:
+                call["arguments"] += tool_call.function.arguments
+    return "".join(parts), [calls[i] for i in sorted(calls)]
+
+def promptOllama(host, model, prompt, history, on_chunk=None):
     client = Client( host = host )
     history.append({'role':'user',"content":prompt})
+    if on_chunk is not None:
+        return streamOllama(client, model, history, on_chunk)
     response = client.chat(
         model=model, 
         messages=history, 
@@ -57,4 +98,33 @@ def promptOllama(host, model, prompt, history):
                 "content": f"Use this information in your response: {function_response}",
             })
     final_response = client.chat(model=model, messages=history)
-    return final_response["message"]["content"]
\ No newline at end of file
+    return final_response["message"]["content"]
+
+def streamOllama(client, model, history, on_chunk):
+    content, tool_calls = streamOllamaChat(client, on_chunk, model=model, messages=history, tools=TOOLS_SCHEMA)
+    if not tool_calls:
+        return content
+    for tool in tool_calls:
+        function_to_call = TOOL_MAPPING[tool["function"]["name"]]
+        print(f"Calling function {function_to_call}...")
+        args = getFunctionArguments(tool["function"]["name"], tool["function"]["arguments"])
+        function_response = function_to_call(*args)
+        history.append({
+            "role": "tool",
+            "content": f"Use this information in your response: {function_response}",
+        })
+    content, _ = streamOllamaChat(client, on_chunk, model=model, messages=history)
+    return content
+
+def streamOllamaChat(client, on_chunk, **kwargs):
+    """Streams one chat response, emitting content as it arrives and collecting any tool calls."""
+    parts = []
+    tool_calls = []
+    for chunk in client.chat(stream=True, **kwargs):
+        message = chunk["message"]
+        if message.get("content"):
+            parts.append(message["content"])
+            on_chunk(message["content"])
+        if message.get("tool_calls"):
+            tool_calls.extend(message["tool_calls"])
+    return "".join(parts), tool_calls
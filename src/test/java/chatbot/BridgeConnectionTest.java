@@ -0,0 +1,262 @@
+package chatbot;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the framing negotiation and both framings against a local mock of the Python server.
+ */
+class BridgeConnectionTest
+{
+    private static final int CONNECT_TIMEOUT_MS = 2_000;
+
+    private MockServer server;
+
+    @AfterEach
+    void stopServer() throws IOException {
+        if (server != null) server.close();
+    }
+
+    private static JsonObject request(long id, String text) {
+        JsonObject request = new JsonObject();
+        request.addProperty("id", id);
+        request.addProperty("function", "echo");
+        request.addProperty("text", text);
+        return request;
+    }
+
+    private static String largeText() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; sb.length() <= 3 * BridgeConnection.COMPRESS_THRESHOLD; i++) {
+            sb.append("dependency ").append(i).append(" is licensed under Apache-2.0, ünïcödé\n");
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void helloNegotiatesBinaryFraming() throws Exception {
+        server = new MockServer("{\"hello\":{\"framing\":\"" + BridgeConnection.FRAMING + "\",\"compression\":[\"zlib\"]}}");
+        try (BridgeConnection connection = new BridgeConnection("localhost", server.port(), CONNECT_TIMEOUT_MS)) {
+            JsonObject response = connection.send(1, request(1, "small"), null).get(5, TimeUnit.SECONDS);
+
+            assertEquals("small", response.get("text").getAsString());
+        }
+        JsonObject hello = JsonParser.parseString(server.hello).getAsJsonObject().getAsJsonObject("hello");
+        assertEquals(BridgeConnection.FRAMING, hello.getAsJsonArray("framing").get(0).getAsString());
+        assertEquals("zlib", hello.getAsJsonArray("compression").get(0).getAsString());
+        assertEquals(List.of(0), server.frameFlags);
+    }
+
+    @Test
+    void largeFramesRoundTripCompressed() throws Exception {
+        server = new MockServer("{\"hello\":{\"framing\":\"" + BridgeConnection.FRAMING + "\",\"compression\":[\"zlib\"]}}");
+        String text = largeText();
+        try (BridgeConnection connection = new BridgeConnection("localhost", server.port(), CONNECT_TIMEOUT_MS)) {
+            JsonObject response = connection.send(1, request(1, text), null).get(5, TimeUnit.SECONDS);
+
+            assertEquals(text, response.get("text").getAsString());
+        }
+        // Sent compressed, and the compressed reply was inflated
+        assertEquals(List.of(1), server.frameFlags);
+        assertTrue(server.compressedReplies > 0);
+    }
+
+    @Test
+    void largeFramesStayUncompressedWithoutZlib() throws Exception {
+        server = new MockServer("{\"hello\":{\"framing\":\"" + BridgeConnection.FRAMING + "\",\"compression\":[]}}");
+        String text = largeText();
+        try (BridgeConnection connection = new BridgeConnection("localhost", server.port(), CONNECT_TIMEOUT_MS)) {
+            assertEquals(text, connection.send(1, request(1, text), null).get(5, TimeUnit.SECONDS).get("text").getAsString());
+        }
+        assertEquals(List.of(0), server.frameFlags);
+    }
+
+    @Test
+    void serverWithoutFramingFallsBackToNewlines() throws Exception {
+        // An older server answers the hello like any unknown request
+        server = new MockServer("{\"error\":\"unknown request\"}");
+        String text = largeText();
+        try (BridgeConnection connection = new BridgeConnection("localhost", server.port(), CONNECT_TIMEOUT_MS)) {
+            assertEquals("small", connection.send(1, request(1, "small"), null).get(5, TimeUnit.SECONDS).get("text").getAsString());
+            assertEquals(text, connection.send(2, request(2, text), null).get(5, TimeUnit.SECONDS).get("text").getAsString());
+        }
+        assertTrue(server.frameFlags.isEmpty());
+        assertEquals(2, server.lines.size());
+    }
+
+    @Test
+    void helloWithoutAFramingFallsBackToNewlines() throws Exception {
+        server = new MockServer("{\"hello\":{\"framing\":\"newline\"}}");
+        try (BridgeConnection connection = new BridgeConnection("localhost", server.port(), CONNECT_TIMEOUT_MS)) {
+            assertEquals("small", connection.send(1, request(1, "small"), null).get(5, TimeUnit.SECONDS).get("text").getAsString());
+        }
+        assertEquals(1, server.lines.size());
+    }
+
+    @Test
+    void silentServerFailsTheHandshakeWithinTheTimeout() throws Exception {
+        server = new MockServer(null);
+        long start = System.nanoTime();
+
+        assertThrows(IOException.class, () -> new BridgeConnection("localhost", server.port(), 500));
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+    }
+
+    @Test
+    void corruptCompressedFrameBreaksTheConnection() throws Exception {
+        server = new MockServer("{\"hello\":{\"framing\":\"" + BridgeConnection.FRAMING + "\",\"compression\":[\"zlib\"]}}");
+        server.corruptReplies = true;
+        try (BridgeConnection connection = new BridgeConnection("localhost", server.port(), CONNECT_TIMEOUT_MS)) {
+            CompletableFuture<JsonObject> response = connection.send(1, request(1, "small"), null);
+
+            ExecutionException e = assertThrows(ExecutionException.class, () -> response.get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof IOException);
+            assertFalse(connection.isHealthy());
+        }
+    }
+
+    @Test
+    void inflateStopsAtTheLimit() throws IOException {
+        byte[] data = new byte[1024 * 1024];
+        byte[] compressed = BridgeConnection.deflate(data);
+
+        assertArrayEquals(data, BridgeConnection.inflate(compressed, data.length));
+        IOException e = assertThrows(IOException.class, () -> BridgeConnection.inflate(compressed, data.length - 1));
+        assertTrue(e.getMessage().contains("more than"), e.getMessage());
+        assertThrows(IOException.class, () -> BridgeConnection.inflate(Arrays.copyOf(compressed, compressed.length / 2), data.length));
+    }
+
+    /**
+     * Answers the hello with a fixed reply (or not at all), then echoes every request in the framing the reply
+     * chose, compressing replies above the threshold like the Python server.
+     */
+    private static final class MockServer implements AutoCloseable
+    {
+        private final ServerSocket socket = new ServerSocket(0);
+        private final String helloReply;
+        volatile String hello;
+        volatile boolean corruptReplies;
+        volatile int compressedReplies;
+        final List<Integer> frameFlags = new CopyOnWriteArrayList<>();
+        final List<String> lines = new CopyOnWriteArrayList<>();
+
+        MockServer(String helloReply) throws IOException {
+            this.helloReply = helloReply;
+            Thread.ofPlatform().daemon().start(this::acceptLoop);
+        }
+
+        int port() {
+            return socket.getLocalPort();
+        }
+
+        private void acceptLoop() {
+            try {
+                while (true) {
+                    Socket client = socket.accept();
+                    Thread.ofPlatform().daemon().start(() -> serve(client));
+                }
+            } catch (IOException ignored) {
+                // closed
+            }
+        }
+
+        private void serve(Socket client) {
+            try (client) {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(client.getInputStream()));
+                DataOutputStream out = new DataOutputStream(client.getOutputStream());
+                hello = readLine(in);
+                if (helloReply == null) {
+                    in.read(); // hold the connection open until the client gives up
+                    return;
+                }
+                out.write((helloReply + "\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                JsonObject reply = JsonParser.parseString(helloReply).getAsJsonObject();
+                boolean binary = reply.has("hello") && BridgeConnection.FRAMING.equals(reply.getAsJsonObject("hello").get("framing").getAsString());
+                boolean zlib = binary && reply.getAsJsonObject("hello").has("compression")
+                        && reply.getAsJsonObject("hello").getAsJsonArray("compression").size() > 0;
+                while (true) {
+                    String message;
+                    if (binary) {
+                        byte[] payload = new byte[in.readInt()];
+                        int flags = in.readUnsignedByte();
+                        in.readFully(payload);
+                        frameFlags.add(flags);
+                        if ((flags & 1) != 0) payload = BridgeConnection.inflate(payload, Integer.MAX_VALUE);
+                        message = new String(payload, StandardCharsets.UTF_8);
+                    } else {
+                        message = readLine(in);
+                        if (message == null) return;
+                        lines.add(message);
+                    }
+                    JsonObject request = JsonParser.parseString(message).getAsJsonObject();
+                    JsonObject response = new JsonObject();
+                    response.add("id", request.get("id"));
+                    response.add("text", request.get("text"));
+                    byte[] bytes = response.toString().getBytes(StandardCharsets.UTF_8);
+                    if (!binary) {
+                        out.write(bytes);
+                        out.write('\n');
+                    } else if (corruptReplies) {
+                        out.writeInt(bytes.length);
+                        out.writeByte(1);
+                        out.write(bytes);
+                    } else if (zlib && bytes.length > BridgeConnection.COMPRESS_THRESHOLD) {
+                        byte[] compressed = BridgeConnection.deflate(bytes);
+                        compressedReplies++;
+                        out.writeInt(compressed.length);
+                        out.writeByte(1);
+                        out.write(compressed);
+                    } else {
+                        out.writeInt(bytes.length);
+                        out.writeByte(0);
+                        out.write(bytes);
+                    }
+                    out.flush();
+                }
+            } catch (IOException ignored) {
+                // client went away
+            }
+        }
+
+        private static String readLine(InputStream in) throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != '\n') {
+                if (b < 0) return line.size() == 0 ? null : line.toString(StandardCharsets.UTF_8);
+                line.write(b);
+            }
+            return line.toString(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
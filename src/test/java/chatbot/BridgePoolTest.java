@@ -0,0 +1,216 @@
+package chatbot;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the pool against a local mock of the Python server, which speaks the newline-delimited protocol and
+ * declines binary framing.
+ */
+class BridgePoolTest
+{
+    private static final int CONNECT_TIMEOUT_MS = 2_000;
+
+    private MockServer server;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = new MockServer();
+    }
+
+    @AfterEach
+    void stopServer() throws IOException {
+        server.close();
+    }
+
+    private static JsonObject request(long id, String function) {
+        JsonObject request = new JsonObject();
+        request.addProperty("id", id);
+        request.addProperty("function", function);
+        return request;
+    }
+
+    @Test
+    void requestsShareOneConnection() throws Exception {
+        BridgePool pool = new BridgePool("localhost", server.port(), 2, CONNECT_TIMEOUT_MS);
+        try {
+            for (long id = 1; id <= 50; id++) {
+                JsonObject response = pool.borrow().send(id, request(id, "echo"), null).get(5, TimeUnit.SECONDS);
+                assertEquals(id, response.get("result").getAsLong());
+            }
+            assertEquals(1, server.connections.get());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    void pooledCallsAreCheaperThanConnectPerCall() throws Exception {
+        int calls = 200;
+        BridgePool pool = new BridgePool("localhost", server.port(), 2, CONNECT_TIMEOUT_MS);
+        try {
+            pool.borrow().send(0, request(0, "echo"), null).get(5, TimeUnit.SECONDS); // warm up
+            long pooledStart = System.nanoTime();
+            for (long id = 1; id <= calls; id++) {
+                pool.borrow().send(id, request(id, "echo"), null).get(5, TimeUnit.SECONDS);
+            }
+            long pooled = System.nanoTime() - pooledStart;
+
+            long perCallStart = System.nanoTime();
+            for (long id = 1; id <= calls; id++) {
+                try (BridgeConnection connection = new BridgeConnection("localhost", server.port(), CONNECT_TIMEOUT_MS)) {
+                    connection.send(id, request(id, "echo"), null).get(5, TimeUnit.SECONDS);
+                }
+            }
+            long perCall = System.nanoTime() - perCallStart;
+
+            assertTrue(pooled < perCall, "pooled " + pooled / 1_000_000 + " ms, connect per call " + perCall / 1_000_000 + " ms");
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    void slowHandshakeDoesNotBlockCallersThatCanShare() throws Exception {
+        BridgePool pool = new BridgePool("localhost", server.port(), 2, CONNECT_TIMEOUT_MS);
+        try {
+            // Keep the first connection busy, so the next caller opens the second slot
+            BridgeConnection first = pool.borrow();
+            CompletableFuture<JsonObject> held = first.send(1, request(1, "hold"), null);
+
+            server.stallHandshakes = new CountDownLatch(1);
+            CompletableFuture<BridgeConnection> connecting = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return pool.borrow();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            assertTrue(server.handshakeStarted.await(5, TimeUnit.SECONDS));
+
+            // The second slot is reserved by the stalled caller, so this one shares the busy connection right away
+            long start = System.nanoTime();
+            BridgeConnection shared = pool.borrow();
+            long waitedMillis = (System.nanoTime() - start) / 1_000_000;
+            assertSame(first, shared);
+            assertTrue(waitedMillis < 500, "borrow waited " + waitedMillis + " ms for another caller's handshake");
+
+            server.stallHandshakes.countDown();
+            assertNotSame(first, connecting.get(5, TimeUnit.SECONDS));
+            server.release.countDown();
+            assertEquals("held", held.get(5, TimeUnit.SECONDS).get("result").getAsString());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    void brokenConnectionIsReplaced() throws Exception {
+        BridgePool pool = new BridgePool("localhost", server.port(), 1, CONNECT_TIMEOUT_MS);
+        try {
+            BridgeConnection first = pool.borrow();
+            first.close();
+            BridgeConnection second = pool.borrow();
+            assertNotSame(first, second);
+            assertEquals(7L, second.send(7, request(7, "echo"), null).get(5, TimeUnit.SECONDS).get("result").getAsLong());
+        } finally {
+            pool.close();
+        }
+    }
+
+    private static final class MockServer implements AutoCloseable
+    {
+        private final ServerSocket socket = new ServerSocket(0);
+        final AtomicInteger connections = new AtomicInteger();
+        final CountDownLatch handshakeStarted = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile CountDownLatch stallHandshakes;
+
+        MockServer() throws IOException {
+            Thread.ofPlatform().daemon().start(this::acceptLoop);
+        }
+
+        int port() {
+            return socket.getLocalPort();
+        }
+
+        private void acceptLoop() {
+            try {
+                while (true) {
+                    Socket client = socket.accept();
+                    connections.incrementAndGet();
+                    Thread.ofPlatform().daemon().start(() -> serve(client));
+                }
+            } catch (IOException ignored) {
+                // closed
+            }
+        }
+
+        private void serve(Socket client) {
+            try (client; BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8))) {
+                OutputStream out = client.getOutputStream();
+                in.readLine(); // hello
+                CountDownLatch stall = stallHandshakes;
+                if (stall != null) {
+                    handshakeStarted.countDown();
+                    stall.await();
+                }
+                // Like an older server: no framing offer, so the connection stays newline-delimited
+                write(out, "{\"error\":\"unknown request\"}");
+                String line;
+                while ((line = in.readLine()) != null) {
+                    JsonObject request = JsonParser.parseString(line).getAsJsonObject();
+                    JsonObject response = new JsonObject();
+                    response.add("id", request.get("id"));
+                    if ("hold".equals(request.get("function").getAsString())) {
+                        Thread.ofPlatform().daemon().start(() -> {
+                            try {
+                                release.await();
+                                response.addProperty("result", "held");
+                                write(out, response.toString());
+                            } catch (Exception ignored) {
+                            }
+                        });
+                    } else {
+                        response.add("result", request.get("id"));
+                        write(out, response.toString());
+                    }
+                }
+            } catch (Exception ignored) {
+                // client went away
+            }
+        }
+
+        private static void write(OutputStream out, String line) throws IOException {
+            synchronized (out) {
+                out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package chatbot;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs sessions against a stub of the Python server that keeps server-side histories the way api_functions.py
+ * does, and checks that the history every prompt is answered with is the Java-side window.
+ */
+class ChatbotSessionLlamaPythonTest
+{
+    private static final String SYSTEM_PROMPT = "You are a license compliance assistant.";
+
+    private final StubServer server = new StubServer();
+
+    private ChatbotSessionLlamaPython session(HistoryWindow history) {
+        ChatbotSessionLlamaPython session = new ChatbotSessionLlamaPython("localhost", "llama3", history, server);
+        session.addToHistory("system", SYSTEM_PROMPT);
+        return session;
+    }
+
+    private ChatbotSessionLlamaPython session() {
+        return session(new HistoryWindow());
+    }
+
+    // Prompts and checks that the model saw exactly the history the Java side had before the prompt
+    private static String promptInSync(ChatbotSessionLlamaPython session, StubServer server, String prompt) throws Exception {
+        JsonArray expected = session.getHistory();
+        String answer = session.submitPrompt(prompt);
+        assertEquals(expected, server.lastHistory(), "history for " + prompt);
+        return answer;
+    }
+
+    @Test
+    void promptsOnlyCarryNewEntries() throws Exception {
+        ChatbotSessionLlamaPython session = session();
+
+        assertEquals("answer to q1", promptInSync(session, server, "q1"));
+        promptInSync(session, server, "q2");
+        promptInSync(session, server, "q3");
+
+        assertEquals(List.of("openSession", "promptSession", "promptSession", "promptSession"), server.functions);
+        // The session opens with the system prompt; each prompt then carries the previous question and answer
+        assertEquals(List.of(1, 1, 3), server.bases);
+        assertEquals(List.of(0, 2, 2), server.entryCounts);
+    }
+
+    @Test
+    void lostSessionIsReplayed() throws Exception {
+        ChatbotSessionLlamaPython session = session();
+        promptInSync(session, server, "q1");
+        promptInSync(session, server, "q2");
+
+        // Like a server restart in the middle of the conversation
+        server.sessions.clear();
+        promptInSync(session, server, "q3");
+        promptInSync(session, server, "q4");
+
+        assertEquals(List.of("openSession", "promptSession", "promptSession",
+                "promptSession", "openSession", "promptSession", "promptSession"), server.functions);
+        // The replay carries the whole window, so the prompt after it has nothing to add
+        assertEquals(List.of(1, 1, 5, 5), server.bases);
+        assertEquals(List.of(0, 2, 0, 2), server.entryCounts);
+    }
+
+    @Test
+    void lostResponseIsResentFromTheSameBase() throws Exception {
+        ChatbotSessionLlamaPython session = session();
+        promptInSync(session, server, "q1");
+
+        // The server synced the entries, but the answer never arrived
+        server.loseResponses = 1;
+        assertEquals("", promptInSync(session, server, "q2"));
+        promptInSync(session, server, "q3");
+
+        // q3 starts from where q2 did, so the entries q2 left on the server are replaced rather than duplicated
+        assertEquals(List.of(1, 1, 1), server.bases);
+        assertEquals(List.of(0, 2, 4), server.entryCounts);
+        promptInSync(session, server, "q4");
+        assertEquals(5, (int) server.bases.get(3));
+    }
+
+    @Test
+    void compactedWindowReopensTheSession() throws Exception {
+        // The smallest budget HistoryWindow allows, about ten questions
+        ChatbotSessionLlamaPython session = session(new HistoryWindow(1_000));
+        String padding = " Details: " + "x".repeat(400);
+        List<String> sessionIds = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            promptInSync(session, server, "q" + i + padding);
+            sessionIds.add(server.lastSessionId);
+        }
+
+        // Each compaction replaced the session, and the replaced one was closed
+        long opened = sessionIds.stream().distinct().count();
+        assertTrue(opened > 1, "sessions opened: " + opened);
+        assertEquals(opened - 1, server.functions.stream().filter("closeSession"::equals).count());
+        assertEquals(1, server.sessions.size());
+        assertNotEquals(sessionIds.get(0), sessionIds.get(sessionIds.size() - 1));
+    }
+
+    @Test
+    void serverWithoutSessionsGetsTheFullHistory() throws Exception {
+        server.sessionsSupported = false;
+        ChatbotSessionLlamaPython session = session();
+
+        promptInSync(session, server, "q1");
+        promptInSync(session, server, "q2");
+
+        // Asked once, then the stateless protocol is used for good
+        assertEquals(List.of("openSession", "promptModel", "promptModel"), server.functions);
+    }
+
+    @Test
+    void statelessPromptsAreNotRecorded() throws Exception {
+        ChatbotSessionLlamaPython session = session();
+        promptInSync(session, server, "q1");
+        JsonArray before = session.getHistory();
+
+        assertEquals("answer to helper", session.submitStatelessPrompt("helper"));
+
+        assertEquals(before, session.getHistory());
+        promptInSync(session, server, "q2");
+    }
+
+    @Test
+    void clearAndCloseDropTheServerSession() throws Exception {
+        ChatbotSessionLlamaPython session = session();
+        promptInSync(session, server, "q1");
+
+        session.clearHistory();
+        assertTrue(server.sessions.isEmpty());
+        session.addToHistory("system", SYSTEM_PROMPT);
+        promptInSync(session, server, "q2");
+
+        session.close();
+        assertTrue(server.sessions.isEmpty());
+    }
+
+    /**
+     * The session functions of api_functions.py: openSession stores a copy of the history, and promptSession
+     * truncates the stored history to `base` entries, appends the new ones and answers with the result.
+     */
+    private static final class StubServer implements ChatbotSessionLlamaPython.Bridge
+    {
+        final Map<String, List<JsonElement>> sessions = Collections.synchronizedMap(new LinkedHashMap<>());
+        final List<String> functions = new ArrayList<>();
+        final List<Integer> bases = new ArrayList<>();
+        final List<Integer> entryCounts = new ArrayList<>();
+        final List<JsonArray> histories = new ArrayList<>();
+        boolean sessionsSupported = true;
+        int loseResponses;
+        String lastSessionId;
+        private int nextId;
+
+        JsonArray lastHistory() {
+            return histories.get(histories.size() - 1);
+        }
+
+        @Override
+        public synchronized JsonObject call(JsonObject request, Consumer<String> onChunk) {
+            String function = request.get("function").getAsString();
+            JsonArray args = request.getAsJsonArray("args");
+            functions.add(function);
+            switch (function) {
+                case "openSession" -> {
+                    if (!sessionsSupported) return error("Unknown function");
+                    String id = "session-" + ++nextId;
+                    sessions.put(id, new ArrayList<>(args.get(0).getAsJsonArray().asList()));
+                    return result(id);
+                }
+                case "promptSession" -> {
+                    String id = args.get(0).getAsString();
+                    int base = args.get(4).getAsInt();
+                    JsonArray entries = args.get(5).getAsJsonArray();
+                    List<JsonElement> history = sessions.get(id);
+                    if (history == null || history.size() < base) return error("unknown_session");
+                    lastSessionId = id;
+                    bases.add(base);
+                    entryCounts.add(entries.size());
+                    history.subList(base, history.size()).clear();
+                    entries.forEach(history::add);
+                    JsonArray snapshot = new JsonArray();
+                    history.forEach(snapshot::add);
+                    return answer(args.get(3).getAsString(), snapshot);
+                }
+                case "promptModel" -> {
+                    return answer(args.get(2).getAsString(), args.get(3).getAsJsonArray());
+                }
+                case "closeSession" -> {
+                    sessions.remove(args.get(0).getAsString());
+                    return result(null);
+                }
+                default -> {
+                    return error("Unknown function");
+                }
+            }
+        }
+
+        private JsonObject answer(String prompt, JsonArray history) {
+            histories.add(history.deepCopy());
+            if (loseResponses > 0) {
+                loseResponses--;
+                return new JsonObject();
+            }
+            return result("answer to " + prompt.split(" ")[0]);
+        }
+
+        private static JsonObject result(String value) {
+            JsonObject response = new JsonObject();
+            response.addProperty("result", value);
+            return response;
+        }
+
+        private static JsonObject error(String error) {
+            JsonObject response = new JsonObject();
+            response.addProperty("error", error);
+            return response;
+        }
+    }
+}
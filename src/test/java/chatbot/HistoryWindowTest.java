@@ -0,0 +1,143 @@
+package chatbot;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HistoryWindowTest
+{
+    private static final int BUDGET = 2_000;
+    private static final String SYSTEM_PROMPT = "You are a license compliance assistant.";
+
+    // About 150 tokens, with a JSON blob the summary has to condense
+    private static String turn(int i) {
+        return "Turn " + i + ": {\"group\": \"com.example\", \"name\": \"lib-" + i + "\", \"license\": \"Apache-2.0\", \"padding\": \"" + "x".repeat(300) + "\"} "
+                + "the dependency lib-" + i + " is licensed under Apache-2.0. " + "Further detail follows. ".repeat(8);
+    }
+
+    private static String content(JsonArray messages, int index) {
+        return messages.get(index).getAsJsonObject().get("content").getAsString();
+    }
+
+    private static String role(JsonArray messages, int index) {
+        return messages.get(index).getAsJsonObject().get("role").getAsString();
+    }
+
+    @Test
+    void staysWithinBudgetAndKeepsTheSystemPromptAndLastTurns() {
+        HistoryWindow window = new HistoryWindow(BUDGET);
+        window.add("system", SYSTEM_PROMPT);
+        for (int i = 0; i < 200; i++) {
+            window.add(i % 2 == 0 ? "user" : "assistant", turn(i));
+            assertTrue(window.totalTokens() <= BUDGET, "over budget after turn " + i + ": " + window.totalTokens());
+        }
+
+        JsonArray messages = window.toJsonArray();
+        assertEquals("system", role(messages, 0));
+        assertEquals(SYSTEM_PROMPT, content(messages, 0));
+        // The condensed older turns follow the system prompt
+        assertEquals("system", role(messages, 1));
+        assertTrue(content(messages, 1).startsWith("Summary of the earlier conversation"));
+        assertTrue(content(messages, 1).contains("{…}"), "JSON blobs are condensed");
+        // The last question and answer are verbatim
+        assertEquals(turn(198), content(messages, messages.size() - 2));
+        assertEquals(turn(199), content(messages, messages.size() - 1));
+    }
+
+    @Test
+    void summaryIsCappedAtAQuarterOfTheBudget() {
+        HistoryWindow window = new HistoryWindow(BUDGET);
+        for (int i = 0; i < 500; i++) window.add("user", turn(i));
+
+        String summary = content(window.toJsonArray(), 0);
+        assertTrue(summary.startsWith("Summary of the earlier conversation"));
+        // Header and line breaks on top of the capped lines
+        assertTrue(HistoryWindow.estimateTokens(summary) <= BUDGET / 4 + 20, "summary of " + HistoryWindow.estimateTokens(summary) + " tokens");
+        // Oldest lines went first: the summary holds a run of recent turns
+        List<Integer> folded = new ArrayList<>();
+        Matcher m = Pattern.compile("- user: Turn (\\d+):").matcher(summary);
+        while (m.find()) folded.add(Integer.parseInt(m.group(1)));
+        assertFalse(folded.isEmpty());
+        for (int i = 1; i < folded.size(); i++) assertEquals(folded.get(i - 1) + 1, (int) folded.get(i));
+        assertTrue(folded.get(folded.size() - 1) >= 490, "last folded turn " + folded.get(folded.size() - 1));
+    }
+
+    @Test
+    void oversizedTurnIsTruncatedKeepingItsStartAndEnd() {
+        HistoryWindow window = new HistoryWindow(BUDGET);
+        window.add("system", SYSTEM_PROMPT);
+        window.add("user", "Which dependencies changed?");
+        String report = "START of the change report\n" + "dependency line\n".repeat(5_000) + "END of the change report";
+        window.add("assistant", report);
+
+        assertTrue(window.totalTokens() <= BUDGET, "over budget: " + window.totalTokens());
+        JsonArray messages = window.toJsonArray();
+        String kept = content(messages, messages.size() - 1);
+        assertTrue(kept.startsWith("START of the change report"));
+        assertTrue(kept.endsWith("END of the change report"));
+        assertTrue(kept.contains("[… truncated …]"));
+        assertEquals(SYSTEM_PROMPT, content(messages, 0));
+    }
+
+    @Test
+    void epochChangesExactlyWhenEarlierMessagesChange() {
+        HistoryWindow window = new HistoryWindow(BUDGET);
+        window.add("system", SYSTEM_PROMPT);
+        JsonArray before = window.toJsonArray();
+        int compactions = 0;
+        for (int i = 0; i < 100; i++) {
+            int epoch = window.getEpoch();
+            window.add("user", turn(i));
+            JsonArray after = window.toJsonArray();
+            if (window.getEpoch() == epoch) {
+                // Without a compaction the server may just append the new message
+                assertEquals(before.size() + 1, after.size());
+                for (int j = 0; j < before.size(); j++) assertEquals(before.get(j), after.get(j));
+            } else {
+                assertEquals(epoch + 1, window.getEpoch());
+                compactions++;
+            }
+            before = after;
+        }
+        assertTrue(compactions > 1, "compacted " + compactions + " times");
+        // Compaction frees room down to three quarters, so it does not happen on every turn
+        assertTrue(compactions < 50, "compacted " + compactions + " times");
+    }
+
+    @Test
+    void clearBumpsTheEpochAndUnpinsTheSystemPrompt() {
+        HistoryWindow window = new HistoryWindow(BUDGET);
+        window.add("system", SYSTEM_PROMPT);
+        window.add("user", "hello");
+        int epoch = window.getEpoch();
+
+        window.clear();
+
+        assertEquals(epoch + 1, window.getEpoch());
+        assertEquals(0, window.toJsonArray().size());
+        assertEquals(0, window.totalTokens());
+        window.add("system", "Another prompt");
+        assertEquals("Another prompt", content(window.toJsonArray(), 0));
+    }
+
+    @Test
+    void laterSystemMessagesAreTurns() {
+        HistoryWindow window = new HistoryWindow(BUDGET);
+        window.add("user", "hello");
+        window.add("system", "not pinned");
+
+        JsonArray messages = window.toJsonArray();
+        assertEquals(2, messages.size());
+        JsonObject last = messages.get(1).getAsJsonObject();
+        assertEquals("not pinned", last.get("content").getAsString());
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.my_plugin;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CoalescingSchedulerTest
+{
+    private static final long QUIET_MILLIS = 50;
+    // Well past the quiet period, so any run that was going to start has started
+    private static final long SETTLE_MILLIS = 300;
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    // One future per started run, completed by the test to end that run
+    private final List<CompletableFuture<Void>> runs = new CopyOnWriteArrayList<>();
+    private final List<String> runPoms = new CopyOnWriteArrayList<>();
+    private final AtomicInteger cancels = new AtomicInteger();
+
+    private final CoalescingScheduler scheduler = new CoalescingScheduler(timer, QUIET_MILLIS, pomPath -> {
+        runPoms.add(pomPath);
+        CompletableFuture<Void> run = new CompletableFuture<>();
+        runs.add(run);
+        return run;
+    }, cancels::incrementAndGet);
+
+    @AfterEach
+    void shutDown() {
+        scheduler.dispose();
+        timer.shutdownNow();
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out waiting for the scheduler");
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void burstRunsOnceForTheReactorRoot() throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            scheduler.request(i % 2 == 0 ? "/p/module" + i + "/pom.xml" : "/p/pom.xml");
+        }
+        waitFor(() -> runs.size() == 1);
+        Thread.sleep(SETTLE_MILLIS);
+
+        assertEquals(1, runs.size());
+        assertEquals("/p/pom.xml", runPoms.get(0));
+        assertEquals(0, cancels.get());
+
+        runs.get(0).complete(null);
+        waitFor(scheduler::isIdle);
+        assertEquals(1, runs.size());
+    }
+
+    @Test
+    void burstDuringARunCancelsItAndQueuesExactlyOneRerun() throws InterruptedException {
+        scheduler.request("/p/pom.xml");
+        waitFor(() -> runs.size() == 1);
+
+        for (int i = 0; i < 300; i++) {
+            scheduler.request("/p/module" + (i % 7) + "/pom.xml");
+        }
+        waitFor(() -> cancels.get() == 1);
+        Thread.sleep(SETTLE_MILLIS);
+        // The queued run waits for the cancelled one to actually finish
+        assertEquals(1, runs.size());
+        assertEquals(1, cancels.get());
+
+        runs.get(0).complete(null);
+        waitFor(() -> runs.size() == 2);
+        Thread.sleep(SETTLE_MILLIS);
+        assertEquals(2, runs.size());
+
+        runs.get(1).complete(null);
+        waitFor(scheduler::isIdle);
+        assertEquals(2, runs.size());
+    }
+
+    @Test
+    void failedRunStillStartsTheQueuedOne() throws InterruptedException {
+        scheduler.request("/p/pom.xml");
+        waitFor(() -> runs.size() == 1);
+        scheduler.request("/p/pom.xml");
+        waitFor(() -> cancels.get() == 1);
+
+        runs.get(0).completeExceptionally(new IllegalStateException("boom"));
+        waitFor(() -> runs.size() == 2);
+    }
+
+    @Test
+    void disposeDropsTheQueuedRun() throws InterruptedException {
+        scheduler.request("/p/pom.xml");
+        waitFor(() -> runs.size() == 1);
+        scheduler.request("/p/pom.xml");
+        waitFor(() -> cancels.get() == 1);
+
+        scheduler.dispose();
+        runs.get(0).complete(null);
+        Thread.sleep(SETTLE_MILLIS);
+        assertEquals(1, runs.size());
+    }
+}
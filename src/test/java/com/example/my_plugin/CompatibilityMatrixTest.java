@@ -0,0 +1,64 @@
+package com.example.my_plugin;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CompatibilityMatrixTest
+{
+    private static CompatibilityMatrix bundledMatrix() throws IOException {
+        InputStream is = CompatibilityMatrixTest.class.getClassLoader().getResourceAsStream("py_server/matrix.csv");
+        assertNotNull(is, "py_server/matrix.csv is not on the classpath");
+        try (Reader reader = new InputStreamReader(is, StandardCharsets.UTF_8)) {
+            return CompatibilityMatrix.parse(reader);
+        }
+    }
+
+    @Test
+    void quotedCheckDependencyCellsAreRecognized() throws IOException {
+        CompatibilityMatrix matrix = bundledMatrix();
+        assertEquals(CompatibilityMatrix.Verdict.CHECK_DEPENDENCY, matrix.verdict("AGPL-3.0-only", "GPL-1.0-or-later"));
+    }
+
+    @Test
+    void everyQuotedCellOfTheBundledMatrixIsParsed() throws IOException {
+        CompatibilityMatrix matrix = bundledMatrix();
+        int checkDependency = 0;
+        for (int lead = 0; lead < matrix.size(); lead++) {
+            for (int other = 0; other < matrix.size(); other++) {
+                if (matrix.verdict(lead, other) == CompatibilityMatrix.Verdict.CHECK_DEPENDENCY) checkDependency++;
+            }
+        }
+        // matrix.csv has 60 "Check dependency" cells, all of them quoted
+        assertEquals(60, checkDependency);
+    }
+
+    @Test
+    void lookupByIds() throws IOException {
+        CompatibilityMatrix matrix = CompatibilityMatrix.parse(new StringReader(
+                "Compatibility*,MIT,GPL-2.0-only\n"
+                + "MIT,Same,No\n"
+                + "GPL-2.0-only,Yes,\"Same\"\n"));
+        assertEquals(2, matrix.size());
+        assertEquals(CompatibilityMatrix.Verdict.NO, matrix.verdict("MIT", "GPL-2.0-only"));
+        assertEquals(CompatibilityMatrix.Verdict.YES, matrix.verdict("GPL-2.0-only", "MIT"));
+        assertEquals(CompatibilityMatrix.Verdict.SAME, matrix.verdict("GPL-2.0-only", "GPL-2.0-only"));
+        assertNull(matrix.verdict("MIT", "Apache-2.0"));
+    }
+
+    @Test
+    void splitsQuotedFields() {
+        assertArrayEquals(new String[] {"a", "b,c", "say \"hi\"", ""},
+                CompatibilityMatrix.splitCsvLine("a,\"b,c\",\"say \"\"hi\"\"\","));
+    }
+}
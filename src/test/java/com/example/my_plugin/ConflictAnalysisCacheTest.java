@@ -0,0 +1,166 @@
+package com.example.my_plugin;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConflictAnalysisCacheTest
+{
+    private static final int MAX_ENTRIES = Integer.getInteger("licenseTool.llm.cacheMaxEntries", 2000);
+    private static final long TTL_MILLIS = TimeUnit.DAYS.toMillis(Long.getLong("licenseTool.llm.cacheTtlDays", 30L));
+    private static final String SYSTEM_PROMPT = "You are a license expert.";
+    private static final String TEMPLATE = "Is {own} compatible with {other}?";
+
+    @TempDir
+    Path dir;
+
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+
+    private Path file() {
+        return dir.resolve("conflict-cache.json");
+    }
+
+    private ConflictAnalysisCache cache() {
+        return new ConflictAnalysisCache(file(), now::get);
+    }
+
+    private static String key(String model, String systemPrompt, String template) {
+        return ConflictAnalysisCache.key("MIT", "GPL-3.0-only", model, ConflictAnalysisCache.promptHash(systemPrompt, template));
+    }
+
+    @Test
+    void promptOrModelChangeMissesOldEntries() {
+        ConflictAnalysisCache cache = cache();
+        cache.put(key("llama3", SYSTEM_PROMPT, TEMPLATE), "finding");
+
+        assertEquals("finding", cache.get(key("llama3", SYSTEM_PROMPT, TEMPLATE)));
+        assertNull(cache.get(key("qwen2", SYSTEM_PROMPT, TEMPLATE)));
+        assertNull(cache.get(key("llama3", SYSTEM_PROMPT + " Be brief.", TEMPLATE)));
+        assertNull(cache.get(key("llama3", SYSTEM_PROMPT, TEMPLATE + " Answer in JSON.")));
+        // The licenses are part of the key, in order
+        assertNull(cache.get(ConflictAnalysisCache.key("GPL-3.0-only", "MIT", "llama3", ConflictAnalysisCache.promptHash(SYSTEM_PROMPT, TEMPLATE))));
+    }
+
+    @Test
+    void promptHashSeparatesThePrompts() {
+        assertEquals(ConflictAnalysisCache.promptHash("a", "b"), ConflictAnalysisCache.promptHash("a", "b"));
+        assertNotEquals(ConflictAnalysisCache.promptHash("a", "b"), ConflictAnalysisCache.promptHash("ab", ""));
+        assertNotEquals(ConflictAnalysisCache.promptHash("a", "b"), ConflictAnalysisCache.promptHash("b", "a"));
+    }
+
+    @Test
+    void savedEntriesAreLoadedAgain() {
+        ConflictAnalysisCache cache = cache();
+        cache.put("k1", "v1");
+        cache.put("k2", "v2");
+        cache.save();
+
+        ConflictAnalysisCache loaded = cache();
+        assertEquals("v1", loaded.get("k1"));
+        assertEquals("v2", loaded.get("k2"));
+        assertNull(loaded.get("k3"));
+    }
+
+    @Test
+    void entriesExpireOnGet() {
+        ConflictAnalysisCache cache = cache();
+        cache.put("k", "v");
+
+        now.addAndGet(TTL_MILLIS);
+        assertEquals("v", cache.get("k"));
+        now.addAndGet(1);
+        assertNull(cache.get("k"));
+
+        // The expired entry is gone from disk too
+        cache.save();
+        assertNull(cache().get("k"));
+    }
+
+    @Test
+    void expiredEntriesAreNotLoaded() {
+        ConflictAnalysisCache cache = cache();
+        cache.put("old", "v1");
+        now.addAndGet(TTL_MILLIS / 2);
+        cache.put("new", "v2");
+        cache.save();
+
+        now.addAndGet(TTL_MILLIS / 2 + 1);
+        ConflictAnalysisCache loaded = cache();
+        assertNull(loaded.get("old"));
+        assertEquals("v2", loaded.get("new"));
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        ConflictAnalysisCache cache = cache();
+        for (int i = 0; i < MAX_ENTRIES; i++) cache.put("k" + i, "v" + i);
+        // Reading k0 makes k1 the least recently used
+        assertEquals("v0", cache.get("k0"));
+
+        cache.put("overflow", "v");
+
+        assertEquals("v0", cache.get("k0"));
+        assertNull(cache.get("k1"));
+        assertEquals("v2", cache.get("k2"));
+        assertEquals("v", cache.get("overflow"));
+    }
+
+    @Test
+    void recencyOrderSurvivesSaveAndLoad() {
+        ConflictAnalysisCache cache = cache();
+        for (int i = 0; i < MAX_ENTRIES; i++) cache.put("k" + i, "v" + i);
+        cache.get("k0");
+        cache.save();
+
+        ConflictAnalysisCache loaded = cache();
+        loaded.put("overflow", "v");
+
+        // k0 was used after k1 before saving, so k1 is still the one to go
+        assertEquals("v0", loaded.get("k0"));
+        assertNull(loaded.get("k1"));
+    }
+
+    @Test
+    void otherFormatVersionIsDiscarded() throws IOException {
+        Files.writeString(file(), "{\"version\":2,\"entries\":{\"ANALYSIS|MIT|GPL-3.0-only|llama3|abc\":{\"value\":\"v\",\"created\":" + now.get() + "}}}");
+
+        ConflictAnalysisCache cache = cache();
+
+        assertNull(cache.get("ANALYSIS|MIT|GPL-3.0-only|llama3|abc"));
+        // The next save replaces the old file
+        cache.put("k", "v");
+        cache.save();
+        assertEquals("v", cache().get("k"));
+    }
+
+    @Test
+    void unreadableFileStartsEmpty() throws IOException {
+        Files.writeString(file(), "{\"version\":3,\"entries\":");
+
+        ConflictAnalysisCache cache = cache();
+
+        assertNull(cache.get("k"));
+    }
+
+    @Test
+    void unchangedCacheIsNotWritten() {
+        cache().save();
+        assertFalse(Files.exists(file()));
+
+        ConflictAnalysisCache cache = cache();
+        cache.put("k", "v");
+        cache.save();
+        assertTrue(Files.exists(file()));
+    }
+}
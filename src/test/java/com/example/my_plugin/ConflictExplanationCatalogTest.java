@@ -0,0 +1,80 @@
+package com.example.my_plugin;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConflictExplanationCatalogTest
+{
+    private final ConflictExplanationCatalog catalog = new ConflictExplanationCatalog();
+
+    @Test
+    void spdxIdsAndAliasesResolveToFamilies() {
+        assertEquals("strong-copyleft", catalog.familyOf("GPL-3.0-only"));
+        assertEquals("permissive", catalog.familyOf("The Apache Software License, Version 2.0"));
+        assertEquals("permissive", catalog.familyOf("MIT License"));
+        assertEquals("strong-copyleft", catalog.familyOf("https://www.gnu.org/licenses/gpl-3.0.html"));
+        assertNull(catalog.familyOf("Proprietary"));
+        assertNull(catalog.familyOf(null));
+    }
+
+    @Test
+    void noVerdictGetsTheCannedReasonAndCategory() {
+        ConflictExplanationCatalog.Explanation copyleftInPermissive = catalog.explain("MIT", "GPL-3.0-only", "No");
+        assertEquals(ConflictFinding.FIXABLE, copyleftInPermissive.category());
+        assertTrue(copyleftInPermissive.reason().startsWith("GPL-3.0-only is a strong copyleft license"));
+        assertTrue(copyleftInPermissive.reason().endsWith("the more permissive MIT."));
+
+        ConflictExplanationCatalog.Explanation twoCopylefts = catalog.explain("GPL-3.0-only", "AGPL-3.0-only", "No");
+        assertEquals(ConflictFinding.NEEDS_LEGAL_EXPERT, twoCopylefts.category());
+        assertTrue(twoCopylefts.reason().startsWith("GPL-3.0-only and AGPL-3.0-only are both copyleft licenses"));
+    }
+
+    @Test
+    void everyExplanationHasItsPlaceholdersFilled() {
+        List<String> oneLicensePerFamily = List.of("0BSD", "Apache-2.0", "BSD-4-Clause", "LGPL-2.1-only", "GPL-3.0-only", "AGPL-3.0-only");
+        int explained = 0;
+        for (String own : oneLicensePerFamily) {
+            for (String other : oneLicensePerFamily) {
+                ConflictExplanationCatalog.Explanation explanation = catalog.explain(own, other, "No");
+                if (explanation == null) continue;
+                explained++;
+                assertFalse(explanation.reason().contains("{"), explanation.reason());
+                assertTrue(explanation.reason().contains(other), explanation.reason());
+            }
+        }
+        // One per row of licenses/conflict-explanations.csv
+        assertEquals(21, explained);
+    }
+
+    @Test
+    void otherVerdictsAndUnmatchedFamiliesAreLeftToTheLlm() {
+        assertNull(catalog.explain("MIT", "GPL-3.0-only", "Dep."));
+        assertNull(catalog.explain("MIT", "GPL-3.0-only", "?"));
+        assertNull(catalog.explain("MIT", "GPL-3.0-only", "Yes"));
+        // Two permissive licenses have no canned conflict
+        assertNull(catalog.explain("MIT", "Apache-2.0", "No"));
+        assertNull(catalog.explain("MIT", "Proprietary", "No"));
+        assertNull(catalog.explain("Proprietary", "GPL-3.0-only", "No"));
+    }
+
+    @Test
+    void rowsWithUnknownReasonsOrCategoriesAreSkipped() {
+        ConflictExplanationCatalog small = new ConflictExplanationCatalog(
+                List.of(new String[]{"MIT", "permissive"}, new String[]{"GPL-3.0-only", "strong-copyleft"},
+                        new String[]{"LGPL-2.1-only", "weak-copyleft"}),
+                List.<String[]>of(new String[]{"copyleft", "{otherLicense} in {myLicense}"}),
+                List.of(new String[]{"permissive", "strong-copyleft", "No", "A", "copyleft"},
+                        new String[]{"permissive", "weak-copyleft", "No", "A", "missing-reason"},
+                        new String[]{"strong-copyleft", "weak-copyleft", "No", "C", "copyleft"}));
+
+        assertEquals(new ConflictExplanationCatalog.Explanation("A", "GPL-3.0-only in MIT"), small.explain("MIT", "GPL-3.0-only", "No"));
+        assertNull(small.explain("MIT", "LGPL-2.1-only", "No"));
+        assertNull(small.explain("GPL-3.0-only", "LGPL-2.1-only", "No"));
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.my_plugin;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ConflictFindingTest
+{
+    private static final List<String> ASKED = List.of("MIT", "GPL-3.0-only");
+
+    private static final String MIT_OK = "{\"license\": \"MIT\", \"conflict\": false, \"reason\": \"Permissive.\"}";
+    private static final String GPL_CONFLICT =
+            "{\"license\": \"GPL-3.0-only\", \"conflict\": true, \"reason\": \"Strong copyleft.\", \"category\": \"B\"}";
+
+    // An answer and the findings it must yield, as license -> "conflict/category/reason"
+    private record Case(String name, String answer, Map<String, String> expected) {}
+
+    private static final List<Case> CASES = List.of(
+            new Case("plain array", "[" + MIT_OK + ", " + GPL_CONFLICT + "]",
+                    Map.of("MIT", "false/null/Permissive.", "GPL-3.0-only", "true/B/Strong copyleft.")),
+            new Case("fenced JSON", "```json\n[" + MIT_OK + ",\n" + GPL_CONFLICT + "]\n```",
+                    Map.of("MIT", "false/null/Permissive.", "GPL-3.0-only", "true/B/Strong copyleft.")),
+            new Case("surrounding prose", "Here is my analysis:\n[" + GPL_CONFLICT + "]\nLet me know if you need more.",
+                    Map.of("GPL-3.0-only", "true/B/Strong copyleft.")),
+            new Case("array inside an object", "{\"findings\": [" + MIT_OK + "]}",
+                    Map.of("MIT", "false/null/Permissive.")),
+            new Case("single object", GPL_CONFLICT,
+                    Map.of("GPL-3.0-only", "true/B/Strong copyleft.")),
+            // Cut off by the token limit: the complete finding is kept, the rest is asked again
+            new Case("truncated array", "[" + MIT_OK + ", {\"license\": \"GPL-3.0-only\", \"conflict\": tr",
+                    Map.of("MIT", "false/null/Permissive.")),
+            new Case("unknown category",
+                    "[{\"license\": \"GPL-3.0-only\", \"conflict\": true, \"reason\": \"Copyleft.\", \"category\": \"C\"}, " + MIT_OK + "]",
+                    Map.of("MIT", "false/null/Permissive.")),
+            new Case("lower-case category",
+                    "[{\"license\": \"GPL-3.0-only\", \"conflict\": true, \"reason\": \"Copyleft.\", \"category\": \"a\"}]",
+                    Map.of("GPL-3.0-only", "true/A/Copyleft.")),
+            new Case("conflict without reason",
+                    "[{\"license\": \"GPL-3.0-only\", \"conflict\": true, \"reason\": \" \", \"category\": \"A\"}]",
+                    Map.of()),
+            new Case("missing license", "[{\"conflict\": false, \"reason\": \"Permissive.\"}, " + GPL_CONFLICT + "]",
+                    Map.of("GPL-3.0-only", "true/B/Strong copyleft.")),
+            new Case("conflict as a string", "[{\"license\": \"MIT\", \"conflict\": \"false\", \"reason\": \"Permissive.\"}]",
+                    Map.of()),
+            new Case("license spelled differently", "[{\"license\": \" mit \", \"conflict\": false, \"reason\": \"Permissive.\"}]",
+                    Map.of("MIT", "false/null/Permissive.")),
+            new Case("license not asked about", "[{\"license\": \"Apache-2.0\", \"conflict\": false, \"reason\": \"\"}, " + MIT_OK + "]",
+                    Map.of("MIT", "false/null/Permissive.")),
+            new Case("first answer per license wins",
+                    "[" + MIT_OK + ", {\"license\": \"MIT\", \"conflict\": true, \"reason\": \"Changed my mind.\", \"category\": \"A\"}]",
+                    Map.of("MIT", "false/null/Permissive.")),
+            new Case("prose only", "Both licenses are compatible.", Map.of()),
+            new Case("broken JSON", "[{\"license\": \"MIT\", \"conflict\": false,,}]", Map.of()),
+            new Case("no answer", null, Map.of())
+    );
+
+    private static Map<String, String> summarize(Map<String, ConflictFinding> findings) {
+        Map<String, String> summary = new TreeMap<>();
+        findings.forEach((license, f) -> {
+            assertEquals(license, f.license());
+            summary.put(license, f.conflict() + "/" + f.category() + "/" + f.reason());
+        });
+        return summary;
+    }
+
+    @Test
+    void parsesEveryAnswerShape() {
+        for (Case c : CASES) {
+            assertEquals(new TreeMap<>(c.expected()), summarize(ConflictFinding.parse(c.answer(), ASKED)), c.name());
+        }
+    }
+
+    @Test
+    void toJsonRoundTrips() {
+        ConflictFinding conflict = new ConflictFinding("GPL-3.0-only", true, "Strong copyleft.", "B");
+        ConflictFinding noConflict = new ConflictFinding("MIT", false, "Permissive.", null);
+
+        assertEquals(conflict, ConflictFinding.fromJson(conflict.toJson()));
+        assertEquals(noConflict, ConflictFinding.fromJson(noConflict.toJson()));
+    }
+}
@@ -0,0 +1,241 @@
+package com.example.my_plugin;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ModuleSbomsTest
+{
+    private static final Pattern DEPENDENCY = Pattern.compile(
+            "<dependency><groupId>([^<]+)</groupId><artifactId>([^<]+)</artifactId><version>([^<]+)</version></dependency>");
+
+    @TempDir
+    Path dir;
+
+    private Path reactor;
+    private Path licenseToolDir;
+    // The modules argument of every generator call, "*" for a full run
+    private final List<String> calls = new ArrayList<>();
+    private boolean failPartialRuns;
+
+    // Stands in for the CycloneDX run: the BOM of a module lists the dependencies its pom declares
+    private final ModuleSboms.Generator generator = (reactorDir, modules, indicator) -> {
+        if (modules != null && failPartialRuns) throw new IllegalStateException("module not in the reactor");
+        calls.add(modules == null ? "*" : String.join(",", modules));
+        List<File> boms = new ArrayList<>();
+        for (String module : modules == null ? allModules() : modules) {
+            boms.add(writeBom(reactorDir.toPath().resolve(module)));
+        }
+        return boms;
+    };
+
+    @BeforeEach
+    void createReactor() throws IOException {
+        reactor = dir.resolve("reactor");
+        licenseToolDir = reactor.resolve(".license-tool");
+        writePom(reactor, "root", List.of("a", "b"), List.of("root-lib:1"));
+        writePom(reactor.resolve("a"), "a", List.of(), List.of("lib-a:1", "shared:1"));
+        writePom(reactor.resolve("b"), "b", List.of(), List.of("lib-b:1", "shared:1"));
+    }
+
+    private static void writePom(Path moduleDir, String artifactId, List<String> modules, List<String> dependencies) throws IOException {
+        StringBuilder pom = new StringBuilder("<project><groupId>com.example</groupId><artifactId>").append(artifactId)
+                .append("</artifactId><version>1.0</version>");
+        if (!modules.isEmpty()) {
+            pom.append("<packaging>pom</packaging><modules>");
+            modules.forEach(m -> pom.append("<module>").append(m).append("</module>"));
+            pom.append("</modules>");
+        }
+        pom.append("<dependencies>");
+        for (String dependency : dependencies) {
+            String[] nameAndVersion = dependency.split(":");
+            pom.append("<dependency><groupId>g</groupId><artifactId>").append(nameAndVersion[0])
+                    .append("</artifactId><version>").append(nameAndVersion[1]).append("</version></dependency>");
+        }
+        pom.append("</dependencies></project>");
+        Files.createDirectories(moduleDir);
+        Files.writeString(moduleDir.resolve("pom.xml"), pom);
+    }
+
+    private List<String> allModules() {
+        try (Stream<Path> poms = Files.walk(reactor)) {
+            return poms.filter(p -> p.getFileName().toString().equals("pom.xml"))
+                    .map(p -> reactor.relativize(p.getParent()).toString().replace('\\', '/'))
+                    .map(m -> m.isEmpty() ? "." : m)
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static File writeBom(Path moduleDir) {
+        try {
+            StringBuilder bom = new StringBuilder("<bom xmlns=\"http://cyclonedx.org/schema/bom/1.5\"><components>");
+            Matcher m = DEPENDENCY.matcher(Files.readString(moduleDir.resolve("pom.xml")));
+            while (m.find()) {
+                bom.append("<component><group>").append(m.group(1)).append("</group><name>").append(m.group(2))
+                        .append("</name><version>").append(m.group(3)).append("</version><purl>pkg:maven/")
+                        .append(m.group(1)).append('/').append(m.group(2)).append('@').append(m.group(3))
+                        .append("</purl></component>");
+            }
+            bom.append("</components></bom>");
+            Path target = moduleDir.resolve("target");
+            Files.createDirectories(target);
+            Path file = target.resolve("license-tool-bom.xml");
+            Files.writeString(file, bom);
+            return file.toFile();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void deleteModule(String module) throws IOException {
+        try (Stream<Path> files = Files.walk(reactor.resolve(module))) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) Files.delete(file);
+        }
+    }
+
+    private List<SbomComponent> update() {
+        return new ModuleSboms(reactor, licenseToolDir, generator).update(null);
+    }
+
+    private static Set<String> keys(List<SbomComponent> components) {
+        Set<String> keys = new TreeSet<>();
+        components.forEach(c -> keys.add(c.name() + ":" + c.version()));
+        return keys;
+    }
+
+    private Path fragment(String module) {
+        return licenseToolDir.resolve(ModuleSboms.DIR_NAME).resolve(module + ".xml");
+    }
+
+    @Test
+    void missingIndexRegeneratesEveryModule() {
+        List<SbomComponent> components = update();
+
+        assertEquals(List.of("*"), calls);
+        assertEquals(Set.of("root-lib:1", "lib-a:1", "lib-b:1", "shared:1"), keys(components));
+        assertTrue(Files.exists(fragment(".")));
+        assertTrue(Files.exists(fragment("a")));
+        assertTrue(Files.exists(fragment("b")));
+    }
+
+    @Test
+    void unreadableIndexRegeneratesEveryModule() throws IOException {
+        update();
+        Files.writeString(licenseToolDir.resolve(ModuleSboms.DIR_NAME).resolve("index.json"), "{not json");
+
+        update();
+
+        assertEquals(List.of("*", "*"), calls);
+    }
+
+    @Test
+    void unchangedPomsRunNothing() throws IOException {
+        List<SbomComponent> first = update();
+        // Not a dependency-relevant change
+        Files.writeString(reactor.resolve("a/pom.xml"), Files.readString(reactor.resolve("a/pom.xml"))
+                .replace("<dependencies>", "<name>Module A</name><dependencies>"));
+
+        List<SbomComponent> second = update();
+
+        assertEquals(List.of("*"), calls);
+        assertEquals(keys(first), keys(second));
+    }
+
+    @Test
+    void changedLeafRegeneratesOnlyThatModule() throws IOException {
+        update();
+        writePom(reactor.resolve("a"), "a", List.of(), List.of("lib-a:2", "shared:1"));
+
+        List<SbomComponent> components = update();
+
+        assertEquals(List.of("*", "a"), calls);
+        assertEquals(Set.of("root-lib:1", "lib-a:2", "lib-b:1", "shared:1"), keys(components));
+    }
+
+    @Test
+    void changedAggregatorRegeneratesEveryModule() throws IOException {
+        update();
+        writePom(reactor, "root", List.of("a", "b"), List.of("root-lib:2"));
+
+        List<SbomComponent> components = update();
+
+        assertEquals(List.of("*", "*"), calls);
+        assertEquals(Set.of("root-lib:2", "lib-a:1", "lib-b:1", "shared:1"), keys(components));
+    }
+
+    @Test
+    void failedPartialRunFallsBackToAFullOne() throws IOException {
+        update();
+        writePom(reactor.resolve("b"), "b", List.of(), List.of("lib-b:2", "shared:1"));
+        failPartialRuns = true;
+
+        List<SbomComponent> components = update();
+
+        assertEquals(List.of("*", "*"), calls);
+        assertEquals(Set.of("root-lib:1", "lib-a:1", "lib-b:2", "shared:1"), keys(components));
+    }
+
+    @Test
+    void removedModuleLosesItsFragment() throws IOException {
+        update();
+        writePom(reactor, "root", List.of("a"), List.of("root-lib:1"));
+        deleteModule("b");
+
+        List<SbomComponent> components = update();
+
+        assertFalse(Files.exists(fragment("b")));
+        assertEquals(Set.of("root-lib:1", "lib-a:1", "shared:1"), keys(components));
+        assertFalse(Files.readString(licenseToolDir.resolve(ModuleSboms.DIR_NAME).resolve("index.json")).contains("b/pom.xml"));
+    }
+
+    @Test
+    void removedLeafPomDropsItsFragmentWithoutARun() throws IOException {
+        update();
+        Files.delete(reactor.resolve("b/pom.xml"));
+
+        List<SbomComponent> components = update();
+
+        assertEquals(List.of("*"), calls);
+        assertFalse(Files.exists(fragment("b")));
+        assertEquals(Set.of("root-lib:1", "lib-a:1", "shared:1"), keys(components));
+    }
+
+    @Test
+    void mergeListsComponentsSharedByModulesOnce() {
+        List<SbomComponent> components = update();
+
+        assertEquals(4, components.size());
+        assertEquals(1, components.stream().filter(c -> c.name().equals("shared")).count());
+    }
+
+    @Test
+    void projectWithoutModulesIsNoReactor() throws IOException {
+        writePom(reactor, "root", List.of(), List.of("root-lib:1"));
+        deleteModule("a");
+        deleteModule("b");
+
+        assertNull(update());
+        assertTrue(calls.isEmpty());
+    }
+}
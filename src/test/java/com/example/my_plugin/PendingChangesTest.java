@@ -0,0 +1,63 @@
+package com.example.my_plugin;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PendingChangesTest
+{
+    @TempDir
+    Path dir;
+
+    private static JsonObject dependency(String name) {
+        return new Dependency("g", name, "1", List.of(new License("MIT", ""))).toJson();
+    }
+
+    private static JsonObject changes(List<String> added, List<String> removed) {
+        JsonObject changes = new JsonObject();
+        JsonArray addedArray = new JsonArray();
+        added.forEach(name -> addedArray.add(dependency(name)));
+        JsonArray removedArray = new JsonArray();
+        removed.forEach(name -> removedArray.add(dependency(name)));
+        changes.add("addedComponents", addedArray);
+        changes.add("removedComponents", removedArray);
+        return changes;
+    }
+
+    @Test
+    void changesOfACancelledRunAreReportedByTheNextOne() {
+        // First run diffs, saves its state and is cancelled before reporting
+        assertEquals(changes(List.of("a"), List.of()), PendingChanges.carry(dir, changes(List.of("a"), List.of())));
+        assertTrue(Files.exists(dir.resolve(PendingChanges.FILE_NAME)));
+
+        // The queued run finds nothing new against the saved state, but still reports the first run's changes
+        assertEquals(changes(List.of("a"), List.of()), PendingChanges.carry(dir, new JsonObject()));
+        assertEquals(changes(List.of("a", "b"), List.of("c")), PendingChanges.carry(dir, changes(List.of("b"), List.of("c"))));
+
+        PendingChanges.clear(dir);
+        assertFalse(Files.exists(dir.resolve(PendingChanges.FILE_NAME)));
+        assertTrue(PendingChanges.carry(dir, new JsonObject()).isEmpty());
+    }
+
+    @Test
+    void addedThenRemovedCancelsOut() {
+        JsonObject merged = PendingChanges.merge(changes(List.of("a", "b"), List.of("c")), changes(List.of("c"), List.of("a")));
+        assertEquals(changes(List.of("b"), List.of()), merged);
+        assertTrue(PendingChanges.merge(changes(List.of("a"), List.of()), changes(List.of(), List.of("a"))).isEmpty());
+    }
+
+    @Test
+    void nothingPendingWritesNothing() {
+        assertTrue(PendingChanges.carry(dir, new JsonObject()).isEmpty());
+        assertFalse(Files.exists(dir.resolve(PendingChanges.FILE_NAME)));
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.my_plugin;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PomFingerprintTest
+{
+    @TempDir
+    Path base;
+
+    private void write(String path, String content) throws IOException {
+        Path file = base.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+
+    private static String pom(String artifact, String body) {
+        return "<project xmlns=\"http://maven.apache.org/POM/4.0.0\"><groupId>g</groupId><artifactId>" + artifact
+                + "</artifactId><version>1</version>" + body + "</project>";
+    }
+
+    private static final String GUAVA = "<dependencies><dependency><groupId>com.google.guava</groupId>"
+            + "<artifactId>guava</artifactId><version>${guava.version}</version></dependency></dependencies>";
+
+    @Test
+    void irrelevantEditsKeepTheFingerprint() throws IOException {
+        write("pom.xml", pom("root", "<properties><guava.version>33.0</guava.version></properties>" + GUAVA));
+        String before = PomFingerprint.compute(base);
+        write("pom.xml", pom("root", "<!-- edited --><description>x</description>"
+                + "<properties><guava.version>33.0</guava.version><unused>1</unused></properties>" + GUAVA));
+        assertEquals(before, PomFingerprint.compute(base));
+    }
+
+    @Test
+    void everyDefinitionOfAReferencedPropertyCounts() throws IOException {
+        write("pom.xml", pom("root", "<modules><module>a</module><module>b</module></modules>"
+                + "<properties><guava.version>33.0</guava.version></properties>"));
+        write("a/pom.xml", pom("a", "<properties><guava.version>32.0</guava.version></properties>" + GUAVA));
+        write("b/pom.xml", pom("b", "<profiles><profile><id>old</id><properties><guava.version>31.0</guava.version>"
+                + "</properties></profile></profiles>" + GUAVA));
+        String before = PomFingerprint.compute(base);
+        Map<String, String> perPomBefore = PomFingerprint.computePerPom(base);
+
+        // Neither of these is the definition that happens to be read last
+        write("a/pom.xml", pom("a", "<properties><guava.version>32.1</guava.version></properties>" + GUAVA));
+        String afterModule = PomFingerprint.compute(base);
+        assertNotEquals(before, afterModule);
+        write("b/pom.xml", pom("b", "<profiles><profile><id>old</id><properties><guava.version>31.1</guava.version>"
+                + "</properties></profile></profiles>" + GUAVA));
+        assertNotEquals(afterModule, PomFingerprint.compute(base));
+
+        Map<String, String> perPomAfter = PomFingerprint.computePerPom(base);
+        assertNotNull(perPomAfter);
+        assertNotEquals(perPomBefore.get("a/pom.xml"), perPomAfter.get("a/pom.xml"));
+        assertNotEquals(perPomBefore.get("b/pom.xml"), perPomAfter.get("b/pom.xml"));
+        assertTrue(perPomAfter.get("pom.xml").startsWith("*"));
+    }
+
+    @Test
+    void buildDirectoryIsSearchedOnlyWhenItIsAModule() throws Exception {
+        write("pom.xml", pom("root", "<modules><module>build</module></modules>"));
+        write("build/pom.xml", pom("build", GUAVA));
+        write("out/pom.xml", pom("stale-copy", GUAVA));
+        write("target/classes/pom.xml", pom("stale-copy", GUAVA));
+
+        assertEquals(Set.of("pom.xml", "build/pom.xml"), PomFingerprint.computePerPom(base).keySet());
+
+        write("pom.xml", pom("root", "<profiles><profile><id>all</id><modules><module>out/pom.xml</module></modules>"
+                + "</profile></profiles>"));
+        Map<String, String> perPom = PomFingerprint.computePerPom(base);
+        assertTrue(perPom.containsKey("out/pom.xml"));
+        assertFalse(perPom.containsKey("build/pom.xml"));
+    }
+
+    @Test
+    void pomWithADoctypeIsRefused() throws IOException {
+        write("secret.txt", "s3cr3t");
+        write("pom.xml", "<?xml version=\"1.0\"?><!DOCTYPE project [<!ENTITY leak SYSTEM \""
+                + base.resolve("secret.txt").toUri() + "\">]>"
+                + pom("root", "<properties><guava.version>&leak;</guava.version></properties>" + GUAVA));
+
+        assertNull(PomFingerprint.compute(base));
+        assertNull(PomFingerprint.computePerPom(base));
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.my_plugin;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PomLicensesTest
+{
+    @TempDir
+    Path repository;
+
+    // Results are cached by coordinates for the whole JVM, so every test uses its own artifact ids
+    private void writePom(String group, String artifact, String version, String body) throws IOException {
+        Path dir = repository.resolve(group.replace('.', '/')).resolve(artifact).resolve(version);
+        Files.createDirectories(dir);
+        Files.writeString(dir.resolve(artifact + "-" + version + ".pom"),
+                "<?xml version=\"1.0\"?><project xmlns=\"http://maven.apache.org/POM/4.0.0\"><modelVersion>4.0.0</modelVersion>"
+                        + body + "<groupId>" + group + "</groupId><artifactId>" + artifact + "</artifactId><version>" + version
+                        + "</version></project>");
+    }
+
+    private static String licenses(String... nameAndUrls) {
+        StringBuilder sb = new StringBuilder("<licenses>");
+        for (int i = 0; i < nameAndUrls.length; i += 2) {
+            sb.append("<license>");
+            if (nameAndUrls[i] != null) sb.append("<name>").append(nameAndUrls[i]).append("</name>");
+            if (nameAndUrls[i + 1] != null) sb.append("<url>").append(nameAndUrls[i + 1]).append("</url>");
+            sb.append("</license>");
+        }
+        return sb.append("</licenses>").toString();
+    }
+
+    private static String parent(String group, String artifact, String version) {
+        return "<parent><groupId>" + group + "</groupId><artifactId>" + artifact + "</artifactId><version>" + version + "</version></parent>";
+    }
+
+    private static List<String> types(List<License> licenses) {
+        List<String> types = new ArrayList<>();
+        licenses.forEach(l -> types.add(l.getType()));
+        return types;
+    }
+
+    @Test
+    void namesAndUrlsMapToSpdxIds() throws IOException {
+        writePom("org.example", "aliases", "1.0", licenses(
+                "The Apache Software License, Version 2.0", "https://www.apache.org/licenses/LICENSE-2.0.txt",
+                null, "http://opensource.org/licenses/MIT/",
+                "  GNU General Public License v3.0  ", null,
+                "Acme Corp Internal License", "https://acme.example/license"));
+
+        List<License> licenses = PomLicenses.of(repository, "org.example", "aliases", "1.0");
+
+        // Unknown names are kept as they are, with their URL
+        assertEquals(List.of("Apache-2.0", "MIT", "GPL-3.0-only", "Acme Corp Internal License"), types(licenses));
+        assertEquals("https://www.apache.org/licenses/LICENSE-2.0.txt", licenses.get(0).getUrl());
+        assertEquals("", licenses.get(2).getUrl());
+        assertEquals("https://acme.example/license", licenses.get(3).getUrl());
+    }
+
+    @Test
+    void licensesAreInheritedFromTheNearestParentDeclaringAny() throws IOException {
+        writePom("org.example", "inherit-grandparent", "3", licenses("MIT License", null));
+        writePom("org.example", "inherit-parent", "2", parent("org.example", "inherit-grandparent", "3"));
+        // groupId and version default to the ones of the child
+        writePom("org.example", "inherit-child", "1.0", "<parent><artifactId>inherit-parent</artifactId><version>2</version></parent>");
+        writePom("org.example", "inherit-own", "1.0", parent("org.example", "inherit-grandparent", "3")
+                + licenses("Apache License 2.0", null));
+
+        assertEquals(List.of("MIT"), types(PomLicenses.of(repository, "org.example", "inherit-child", "1.0")));
+        // A POM's own licenses win over the parent's
+        assertEquals(List.of("Apache-2.0"), types(PomLicenses.of(repository, "org.example", "inherit-own", "1.0")));
+    }
+
+    @Test
+    void missingParentOrPomHasNoLicenses() throws IOException {
+        writePom("org.example", "orphan", "1.0", parent("org.example", "not-downloaded", "1"));
+
+        assertTrue(PomLicenses.of(repository, "org.example", "orphan", "1.0").isEmpty());
+        assertTrue(PomLicenses.of(repository, "org.example", "nowhere", "1.0").isEmpty());
+    }
+
+    @Test
+    void parentCycleEnds() throws IOException {
+        writePom("org.example", "cycle-a", "1", parent("org.example", "cycle-b", "1"));
+        writePom("org.example", "cycle-b", "1", parent("org.example", "cycle-a", "1"));
+
+        assertTrue(PomLicenses.of(repository, "org.example", "cycle-a", "1").isEmpty());
+    }
+
+    @Test
+    void releasedPomsAreCachedByCoordinates() throws IOException {
+        writePom("org.example", "cached", "1.0", licenses("MIT License", null));
+        assertEquals(List.of("MIT"), types(PomLicenses.of(repository, "org.example", "cached", "1.0")));
+
+        // A released POM never changes, so it is not read again
+        writePom("org.example", "cached", "1.0", licenses("Apache License 2.0", null));
+        assertEquals(List.of("MIT"), types(PomLicenses.of(repository, "org.example", "cached", "1.0")));
+    }
+
+    @Test
+    void snapshotsAndMissingPomsAreNotCached() throws IOException {
+        writePom("org.example", "snapshot", "1.0-SNAPSHOT", licenses("MIT License", null));
+        assertEquals(List.of("MIT"), types(PomLicenses.of(repository, "org.example", "snapshot", "1.0-SNAPSHOT")));
+        writePom("org.example", "snapshot", "1.0-SNAPSHOT", licenses("Apache License 2.0", null));
+        assertEquals(List.of("Apache-2.0"), types(PomLicenses.of(repository, "org.example", "snapshot", "1.0-SNAPSHOT")));
+
+        assertTrue(PomLicenses.of(repository, "org.example", "downloaded-later", "1.0").isEmpty());
+        writePom("org.example", "downloaded-later", "1.0", licenses("MIT License", null));
+        assertEquals(List.of("MIT"), types(PomLicenses.of(repository, "org.example", "downloaded-later", "1.0")));
+    }
+
+    @Test
+    void repositoryRootIsFoundFromAnArtifactFile() {
+        Path jar = repository.resolve("org/example/lib/1.0/lib-1.0.jar");
+
+        assertEquals(repository, PomLicenses.repositoryOf(jar, "org.example"));
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.my_plugin;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Regression suite for the StAX reader against the DOM extraction it replaced: on BOMs as written by the
+ * CycloneDX Maven plugin both must yield the same diff keys, apart from the differences listed in
+ * {@link #sameKeysAsTheBaselineOnMavenPluginOutput()}.
+ */
+class SbomReaderTest
+{
+    @TempDir
+    Path tempDir;
+
+    private File resource(String name) throws IOException {
+        try (InputStream in = SbomReaderTest.class.getClassLoader().getResourceAsStream("sbom/" + name)) {
+            assertNotNull(in, "missing test resource sbom/" + name);
+            Path file = tempDir.resolve(name);
+            Files.copy(in, file);
+            return file.toFile();
+        }
+    }
+
+    private static Set<String> staxKeys(File bom) throws IOException {
+        Set<String> keys = new TreeSet<>();
+        for (SbomComponent component : SbomReader.readComponents(bom)) keys.add(component.key());
+        return keys;
+    }
+
+    /**
+     * extractComponentKeys and getTagValue as they were before the StAX reader, unchanged apart from dropping
+     * their logging: the oracle the reader is checked against.
+     */
+    private static Set<String> baselineKeys(File sbomFile) throws Exception {
+        Set<String> keys = new HashSet<>();
+        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
+        DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
+        Document doc = dBuilder.parse(sbomFile);
+        NodeList components = doc.getElementsByTagName("component");
+        for (int i = 0; i < components.getLength(); i++) {
+            Element comp = (Element) components.item(i);
+            String group = getTagValue(comp, "group");
+            String name = getTagValue(comp, "name");
+            String version = getTagValue(comp, "version");
+            String license = getTagValue(comp, "license");
+            keys.add(group + ":" + name + ":" + version + (license.isEmpty() ? "" : ":" + license));
+        }
+        return keys;
+    }
+
+    private static String getTagValue(Element element, String tag) {
+        if ("license".equals(tag)) {
+            NodeList licenseNodes = element.getElementsByTagName("license");
+            StringBuilder licenses = new StringBuilder();
+            for (int i = 0; i < licenseNodes.getLength(); i++) {
+                String license = licenseNodes.item(i).getTextContent();
+                if (license != null && !license.trim().isEmpty()) {
+                    if (!licenses.isEmpty()) licenses.append(",");
+                    licenses.append(license.trim());
+                }
+            }
+            return licenses.toString();
+        } else {
+            NodeList nl = element.getElementsByTagName(tag);
+            if (nl.getLength() > 0 && nl.item(0).getTextContent() != null) {
+                return nl.item(0).getTextContent();
+            }
+            return "";
+        }
+    }
+
+    @Test
+    void sameKeysAsTheBaselineOnMavenPluginOutput() throws Exception {
+        File bom = resource("maven-aggregate-bom.xml");
+        Set<String> baseline = baselineKeys(bom);
+        Set<String> stax = staxKeys(bom);
+
+        // Intended difference: the baseline also reported the components under <metadata>, i.e. the project itself
+        // and the plugin that wrote the BOM, which are not dependencies
+        Set<String> metadata = Set.of("com.acme:inventory:1.4.0:Apache-2.0", "org.cyclonedx:cyclonedx-maven-plugin:2.9.1");
+        assertTrue(baseline.containsAll(metadata));
+        assertTrue(Collections.disjoint(stax, metadata));
+        Set<String> dependencies = new TreeSet<>(baseline);
+        dependencies.removeAll(metadata);
+
+        // Intended difference: the baseline kept the indentation between a license's id or name and its url,
+        // where the key has a single newline
+        assertTrue(dependencies.contains("org.slf4j:slf4j-api:2.0.12:MIT\n          https://opensource.org/license/mit/"));
+        assertTrue(stax.contains("org.slf4j:slf4j-api:2.0.12:MIT\nhttps://opensource.org/license/mit/"));
+        Set<String> normalized = new TreeSet<>();
+        for (String key : dependencies) normalized.add(key.replaceAll("\\s*\n\\s*", "\n"));
+
+        // Nothing else differs
+        assertEquals(normalized, stax);
+        assertEquals(6, stax.size());
+    }
+
+    @Test
+    void licensesKeepTypeAndUrl() throws Exception {
+        List<SbomComponent> components = SbomReader.readComponents(resource("maven-aggregate-bom.xml"));
+        SbomComponent logback = components.stream().filter(c -> c.name().equals("logback-classic")).findFirst().orElseThrow();
+        assertEquals("pkg:maven/ch.qos.logback/logback-classic@1.5.6?type=jar", logback.purl());
+        assertEquals(2, logback.licenses().size());
+        assertEquals("Eclipse Public License - v 1.0", logback.licenses().get(0).getType());
+        assertEquals("http://www.eclipse.org/legal/epl-v10.html", logback.licenses().get(0).getUrl());
+        assertEquals("com.acme.internal:acme-util:0.9.1", components.get(components.size() - 1).key());
+    }
+
+    @Test
+    void skipsMetadataAndPedigreeButKeepsSubComponents() throws Exception {
+        Set<String> keys = staxKeys(resource("nested-bom.xml"));
+        assertEquals(new TreeSet<>(List.of(
+                "org.example:patched-lib:2.1-acme:Apache-2.0 OR MIT",
+                "org.example:shaded-part:1.0:BSD-3-Clause",
+                "org.other:plain:3")), keys);
+    }
+
+    @Test
+    void malformedBomIsAnIOException() throws IOException {
+        Path bom = tempDir.resolve("broken.xml");
+        Files.writeString(bom, "<bom xmlns=\"http://cyclonedx.org/schema/bom/1.5\"><components><component>");
+        assertThrows(IOException.class, () -> SbomReader.readComponents(bom.toFile()));
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.my_plugin;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SbomSnapshotTest
+{
+    private static final SbomComponent GUAVA = new SbomComponent("com.google.guava", "guava", "33.0.0-jre",
+            "pkg:maven/com.google.guava/guava@33.0.0-jre",
+            List.of(new License("Apache-2.0", "https://www.apache.org/licenses/LICENSE-2.0.txt")));
+    private static final SbomComponent DUAL = new SbomComponent("org.example", "dual", "1.0", "pkg:maven/org.example/dual@1.0",
+            List.of(new License("EPL-2.0", ""), new License("GPL-2.0-only WITH Classpath-exception-2.0", "")));
+    private static final SbomComponent NO_PURL = new SbomComponent("org.example", "local-jar", "1.0", null,
+            List.of(new License("MIT", "")));
+    private static final SbomComponent NO_LICENSES = new SbomComponent("org.example", "unlicensed", "0.1-SNAPSHOT",
+            "pkg:maven/org.example/unlicensed@0.1-SNAPSHOT", List.of());
+    private static final SbomComponent NON_ASCII = new SbomComponent("org.example", "bibliothèque", "1.0", "pkg:maven/org.example/biblioth%C3%A8que@1.0",
+            List.of(new License("Licence Libre du Québec", "")));
+
+    @TempDir
+    Path dir;
+
+    private Path snapshot() {
+        return SbomSnapshot.pathIn(dir);
+    }
+
+    private Path writeBom(String content) throws IOException {
+        Path bom = dir.resolve("bom.xml");
+        Files.writeString(bom, content);
+        return bom;
+    }
+
+    @Test
+    void writeAndReadRoundTrip() throws IOException {
+        List<SbomComponent> components = List.of(GUAVA, DUAL, NO_PURL, NO_LICENSES, NON_ASCII);
+        byte[] hash = SbomSnapshot.hash(components);
+
+        SbomSnapshot.write(snapshot(), hash, components);
+        SbomSnapshot read = SbomSnapshot.read(snapshot());
+
+        assertNotNull(read);
+        assertTrue(read.matches(hash));
+        assertEquals(List.of(GUAVA.purl(), DUAL.purl(), NO_PURL.key(), NO_LICENSES.purl(), NON_ASCII.purl()),
+                List.copyOf(read.getComponents().keySet()));
+        assertEquals(GUAVA, read.getComponents().get(GUAVA.purl()));
+        assertEquals(DUAL, read.getComponents().get(DUAL.purl()));
+        assertEquals(NO_LICENSES, read.getComponents().get(NO_LICENSES.purl()));
+        assertEquals(NON_ASCII, read.getComponents().get(NON_ASCII.purl()));
+        // A missing purl comes back empty, the way SbomReader reports it, and the component is keyed by its diff key
+        SbomComponent noPurl = read.getComponents().get(NO_PURL.key());
+        assertEquals("", noPurl.purl());
+        assertEquals(NO_PURL.key(), noPurl.key());
+        // No temp file is left behind
+        assertFalse(Files.exists(snapshot().resolveSibling(SbomSnapshot.FILE_NAME + ".tmp")));
+    }
+
+    @Test
+    void emptySnapshotRoundTrips() throws IOException {
+        SbomSnapshot.write(snapshot(), new byte[0], List.of());
+
+        SbomSnapshot read = SbomSnapshot.read(snapshot());
+
+        assertNotNull(read);
+        assertTrue(read.getComponents().isEmpty());
+        assertTrue(read.matches(new byte[0]));
+    }
+
+    @Test
+    void snapshotNoLongerMatchesAChangedBom() throws IOException {
+        Path bom = writeBom("<bom><components><component><name>guava</name></component></components></bom>");
+        SbomSnapshot.write(snapshot(), SbomSnapshot.hash(bom.toFile()), List.of(GUAVA));
+        SbomSnapshot read = SbomSnapshot.read(snapshot());
+        assertTrue(read.matches(SbomSnapshot.hash(bom.toFile())));
+
+        writeBom("<bom><components><component><name>guava</name></component><component><name>dual</name></component></components></bom>");
+
+        assertFalse(read.matches(SbomSnapshot.hash(bom.toFile())));
+        assertFalse(read.matches(new byte[0]));
+    }
+
+    @Test
+    void componentHashIgnoresOrderButNotContent() {
+        assertArrayEquals(SbomSnapshot.hash(List.of(GUAVA, DUAL)), SbomSnapshot.hash(List.of(DUAL, GUAVA)));
+        assertFalse(Arrays.equals(SbomSnapshot.hash(List.of(GUAVA, DUAL)), SbomSnapshot.hash(List.of(GUAVA))));
+        SbomComponent relicensed = new SbomComponent(GUAVA.group(), GUAVA.name(), GUAVA.version(), GUAVA.purl(), List.of(new License("MIT", "")));
+        assertFalse(Arrays.equals(SbomSnapshot.hash(List.of(GUAVA)), SbomSnapshot.hash(List.of(relicensed))));
+    }
+
+    @Test
+    void missingSnapshotReadsAsNull() {
+        assertNull(SbomSnapshot.read(snapshot()));
+    }
+
+    @Test
+    void truncatedSnapshotReadsAsNull() throws IOException {
+        List<SbomComponent> components = List.of(GUAVA, DUAL, NO_PURL);
+        SbomSnapshot.write(snapshot(), SbomSnapshot.hash(components), components);
+        byte[] full = Files.readAllBytes(snapshot());
+
+        // Cut at every length short of the whole file: inside the header, a length field and a string
+        for (int length = 0; length < full.length; length++) {
+            Files.write(snapshot(), Arrays.copyOf(full, length));
+            assertNull(SbomSnapshot.read(snapshot()), "truncated to " + length + " bytes");
+        }
+    }
+
+    @Test
+    void corruptSnapshotReadsAsNull() throws IOException {
+        Files.writeString(snapshot(), "<bom>not a snapshot</bom>");
+        assertNull(SbomSnapshot.read(snapshot()));
+
+        // The right header followed by counts no file of this size can hold
+        writeHeader(new byte[32], Integer.MAX_VALUE / 2);
+        assertNull(SbomSnapshot.read(snapshot()));
+        writeHeader(new byte[32], -1);
+        assertNull(SbomSnapshot.read(snapshot()));
+    }
+
+    @Test
+    void otherFormatVersionReadsAsNull() throws IOException {
+        List<SbomComponent> components = List.of(GUAVA);
+        SbomSnapshot.write(snapshot(), SbomSnapshot.hash(components), components);
+        byte[] bytes = Files.readAllBytes(snapshot());
+        // The version follows the four magic bytes
+        bytes[5]++;
+        Files.write(snapshot(), bytes);
+
+        assertNull(SbomSnapshot.read(snapshot()));
+    }
+
+    // A valid header from a written snapshot, then the given component count and some bytes
+    private void writeHeader(byte[] hash, int componentCount) throws IOException {
+        SbomSnapshot.write(snapshot(), hash, List.of());
+        byte[] header = Arrays.copyOf(Files.readAllBytes(snapshot()), 4 + 2 + 4 + hash.length);
+        try (OutputStream os = Files.newOutputStream(snapshot()); DataOutputStream out = new DataOutputStream(os)) {
+            out.write(header);
+            out.writeInt(componentCount);
+            out.write(new byte[64]);
+        }
+    }
+}
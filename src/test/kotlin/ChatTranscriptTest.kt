@@ -0,0 +1,79 @@
+package com.example.my_plugin
+
+import com.intellij.openapi.project.Project
+import com.intellij.testFramework.junit5.TestApplication
+import com.intellij.testFramework.runInEdtAndWait
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.awt.image.BufferedImage
+import java.lang.reflect.Proxy
+import java.nio.file.Path
+
+/**
+ * Append latency against transcript length: adding a message and repainting the view must cost about the same
+ * with a few hundred messages as with thousands, since only the visible cells are rendered.
+ */
+@TestApplication
+class ChatTranscriptTest {
+
+    @TempDir
+    lateinit var dir: Path
+
+    // ChatTranscript only needs the project for its base path
+    private fun project(): Project = Proxy.newProxyInstance(javaClass.classLoader, arrayOf(Project::class.java)) { _, method, _ ->
+        if (method.name == "getBasePath") dir.toString() else null
+    } as Project
+
+    private fun reply(i: Int): String =
+        "## Report $i\n\nThe dependency **lib-$i** is licensed under `Apache-2.0`.\n\n- compatible with the project\n- no action needed\n\n```\ncom.example:lib-$i:1.0.$i\n```"
+
+    // Median time of appending and repainting, in microseconds
+    private fun medianAppendMicros(transcript: ChatTranscript, image: BufferedImage, count: Int): Long {
+        val samples = LongArray(count)
+        for (i in 0 until count) {
+            val start = System.nanoTime()
+            transcript.add(if (i % 2 == 0) "user" else "bot", reply(transcript.size()))
+            transcript.component.validate()
+            val g = image.createGraphics()
+            try {
+                transcript.component.paint(g)
+            } finally {
+                g.dispose()
+            }
+            samples[i] = (System.nanoTime() - start) / 1000
+        }
+        samples.sort()
+        return samples[count / 2]
+    }
+
+    @Test
+    fun appendLatencyDoesNotGrowWithTranscriptLength() = runInEdtAndWait {
+        val transcript = ChatTranscript(project())
+        try {
+            transcript.component.setSize(600, 800)
+            val image = BufferedImage(600, 800, BufferedImage.TYPE_INT_ARGB)
+
+            // Warm up the renderer, then measure early and late in a long session
+            medianAppendMicros(transcript, image, 200)
+            val early = medianAppendMicros(transcript, image, SAMPLES)
+            while (transcript.size() < LONG_SESSION) {
+                transcript.add("bot", reply(transcript.size()))
+            }
+            val late = medianAppendMicros(transcript, image, SAMPLES)
+            println("ChatTranscript append + repaint, median: ${early}µs at ${200 + SAMPLES} messages, ${late}µs at ${LONG_SESSION + SAMPLES}")
+
+            assertEquals(LONG_SESSION + SAMPLES, transcript.size())
+            // Generous bounds for a noisy machine; re-rendering the whole transcript would be orders of magnitude off
+            assertTrue(late <= early * 4 + 2_000, "append latency grew from ${early}µs to ${late}µs")
+        } finally {
+            transcript.dispose()
+        }
+    }
+
+    companion object {
+        private const val SAMPLES = 100
+        private const val LONG_SESSION = 1_000
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.my_plugin
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.concurrent.TimeUnit
+
+/**
+ * Runs a fake `mvn` shell script through the invoker's process handling: output well past the pipe buffer, the
+ * bounded tail kept for error messages, the kill on timeout, and the offline-first retries.
+ */
+class CycloneDxMavenInvokerTest {
+
+    @TempDir
+    lateinit var dir: Path
+
+    private fun fakeMvn(body: String): List<String> {
+        val script = dir.resolve("fake-mvn")
+        Files.writeString(script, "#!/bin/sh\n$body\n")
+        return listOf("sh", script.toString())
+    }
+
+    // About 3.5 MB, far more than a pipe buffer holds, so an undrained run would block forever
+    private val noisyBuild = """
+        i=0
+        while [ ${'$'}i -lt $NOISY_LINES ]; do
+          echo "[INFO] Downloading artifact number ${'$'}i from central with a long line of padding text"
+          i=${'$'}((i+1))
+        done
+        echo "[INFO] CycloneDX: Writing and validating BOM (XML): /tmp/x/bom.xml"
+    """.trimIndent()
+
+    @Test
+    fun largeOutputIsDrainedWhileMavenRuns() {
+        var lines = 0
+        var last = ""
+        val start = System.nanoTime()
+
+        val run = CycloneDxMavenInvoker.runMaven(fakeMvn(noisyBuild), dir.toFile(), null, false, timeoutSeconds = 60) {
+            lines++
+            last = it
+        }
+
+        assertEquals(0, run.exitCode)
+        assertEquals(NOISY_LINES + 1, lines)
+        assertTrue(last.endsWith("/tmp/x/bom.xml"))
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(60))
+    }
+
+    @Test
+    fun tailOfAFailedRunIsBounded() {
+        val run = CycloneDxMavenInvoker.runMaven(fakeMvn("$noisyBuild\necho '[ERROR] BUILD FAILURE'\nexit 3"),
+            dir.toFile(), null, false, timeoutSeconds = 60)
+
+        assertEquals(3, run.exitCode)
+        assertTrue(run.tail.endsWith("[ERROR] BUILD FAILURE"))
+        assertTrue(run.tail.startsWith("[... "))
+        // The default licenseTool.maven.outputTailKb plus the omission note
+        assertTrue(run.tail.length < 16 * 1024 + 100, "tail of ${run.tail.length} chars")
+    }
+
+    @Test
+    fun outputTailKeepsWholeLastLines() {
+        val tail = CycloneDxMavenInvoker.OutputTail(100)
+        for (i in 0 until 1000) tail.add("line $i")
+        tail.add("x".repeat(500))
+
+        val text = tail.toString()
+        val kept = text.lines()
+        assertTrue(kept.first().matches(Regex("\\[\\.\\.\\. \\d+ earlier lines omitted]")), kept.first())
+        // A line longer than the whole tail is cut rather than growing the buffer
+        assertEquals("x".repeat(100), kept.last())
+        assertEquals(2, kept.size)
+    }
+
+    @Test
+    fun runPastTheTimeoutIsKilledWithItsChildren() {
+        val childPid = dir.resolve("child.pid")
+        // Like a wrapper forking the Maven JVM: the child holds the pipe open as well
+        val command = fakeMvn("""
+            echo "[INFO] Resolving dependencies"
+            sleep 60 &
+            echo ${'$'}! > "$childPid"
+            wait
+        """.trimIndent())
+        val start = System.nanoTime()
+
+        val e = assertThrows(CycloneDxMavenInvoker.MavenTimeoutException::class.java) {
+            CycloneDxMavenInvoker.runMaven(command, dir.toFile(), null, false, timeoutSeconds = 1)
+        }
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(30))
+        assertTrue(e.message!!.contains("[INFO] Resolving dependencies"))
+        val child = ProcessHandle.of(Files.readString(childPid).trim().toLong())
+        // destroyForcibly only requests the kill, give the OS a moment
+        val deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5)
+        while (child.map { it.isAlive }.orElse(false) && System.nanoTime() < deadline) Thread.sleep(50)
+        assertFalse(child.map { it.isAlive }.orElse(false), "the forked child outlived the timeout")
+    }
+
+    // An executable fake Maven that records its arguments; `offline.exit`/`online.exit` set the exit code of runs
+    // with and without -o, and `online.hang` makes online runs hang
+    private fun recordingMvn(): List<String> {
+        val script = dir.resolve("mvn")
+        Files.writeString(script, """
+            #!/bin/sh
+            echo "${'$'}*" >> "$dir/calls"
+            mode=online
+            [ "${'$'}1" = "-o" ] && mode=offline
+            if [ -f "$dir/${'$'}mode.hang" ]; then sleep 60 & wait; fi
+            exit ${'$'}(cat "$dir/${'$'}mode.exit" 2>/dev/null || echo 0)
+        """.trimIndent() + "\n")
+        script.toFile().setExecutable(true)
+        return listOf(script.toString(), "-B", "makeAggregateBom")
+    }
+
+    private fun calls(): List<String> =
+        if (Files.exists(dir.resolve("calls"))) Files.readAllLines(dir.resolve("calls")) else listOf()
+
+    private val marker get() = dir.resolve(".license-tool/maven-seeded")
+
+    private fun run(mode: CycloneDxMavenInvoker.OfflineMode = CycloneDxMavenInvoker.OfflineMode.AUTO,
+                    localRepo: String? = null): CycloneDxMavenInvoker.MavenRun =
+        CycloneDxMavenInvoker.runOfflineFirst(recordingMvn(), dir.toFile(), dir.toFile(), null, false, mode, localRepo,
+            timeoutSeconds = 2) {}
+
+    @Test
+    fun unseededRunGoesOnlineAndSeeds() {
+        assertEquals(0, run().exitCode)
+
+        assertEquals(listOf("-B makeAggregateBom"), calls())
+        assertEquals("", Files.readString(marker))
+    }
+
+    @Test
+    fun seededRunGoesOffline() {
+        run()
+
+        run()
+
+        assertEquals(listOf("-B makeAggregateBom", "-o -B makeAggregateBom"), calls())
+    }
+
+    @Test
+    fun failedOfflineRunIsRetriedOnline() {
+        run()
+        Files.writeString(dir.resolve("offline.exit"), "1")
+
+        assertEquals(0, run().exitCode)
+
+        assertEquals(listOf("-B makeAggregateBom", "-o -B makeAggregateBom", "-B makeAggregateBom"), calls())
+    }
+
+    @Test
+    fun onlineTimeoutFallsBackToOffline() {
+        Files.writeString(dir.resolve("online.hang"), "")
+
+        assertEquals(0, run().exitCode)
+
+        assertEquals(listOf("-B makeAggregateBom", "-o -B makeAggregateBom"), calls())
+        // Only a successful online run seeds
+        assertFalse(Files.exists(marker))
+    }
+
+    @Test
+    fun alwaysOfflineNeverRetries() {
+        Files.writeString(dir.resolve("offline.exit"), "1")
+
+        assertEquals(1, run(CycloneDxMavenInvoker.OfflineMode.ALWAYS).exitCode)
+
+        assertEquals(listOf("-o -B makeAggregateBom"), calls())
+        assertFalse(Files.exists(marker))
+    }
+
+    @Test
+    fun neverOfflineDoesNotFallBackOnTimeout() {
+        Files.writeString(dir.resolve("online.hang"), "")
+
+        assertThrows(CycloneDxMavenInvoker.MavenTimeoutException::class.java) {
+            run(CycloneDxMavenInvoker.OfflineMode.NEVER)
+        }
+
+        assertEquals(listOf("-B makeAggregateBom"), calls())
+    }
+
+    @Test
+    fun otherLocalRepositoryIsUnseeded() {
+        run()
+        val repo = dir.resolve("repo").toString()
+
+        run(localRepo = repo)
+
+        assertEquals(listOf("-B makeAggregateBom", "-B makeAggregateBom -Dmaven.repo.local=$repo"), calls())
+        assertEquals(repo, Files.readString(marker))
+        // Seeded for the new repository now
+        run(localRepo = repo)
+        assertEquals("-o -B makeAggregateBom -Dmaven.repo.local=$repo", calls().last())
+    }
+
+    companion object {
+        private const val NOISY_LINES = 40_000
+    }
+}
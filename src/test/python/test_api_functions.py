@@ -0,0 +1,114 @@
+"""
+Tests for the session functions of py_server/api_functions.py. The LLM client and license matching packages are stubbed, so only the
+standard library is needed:
+
+    python3 -m unittest discover -s src/test/python
+"""
+
+import os
+import sys
+import types
+import unittest
+from unittest import mock
+
+sys.path.insert(0, os.path.join(os.path.dirname(__file__), "..", "..", "main", "resources", "py_server"))
+for name, attributes in (("ollama", ["Client"]), ("openai", ["OpenAI"]), ("spdx_matcher", [])):
+    if name not in sys.modules:
+        stub = types.ModuleType(name)
+        for attribute in attributes:
+            setattr(stub, attribute, mock.MagicMock())
+        sys.modules[name] = stub
+
+import api_functions  # noqa: E402
+
+
+def entry(role, content):
+    return {"role": role, "content": content}
+
+
+SYSTEM = entry("system", "You are a license compliance assistant.")
+Q1, A1 = entry("user", "q1"), entry("assistant", "a1")
+Q2, A2 = entry("user", "q2"), entry("assistant", "a2")
+
+
+class SyncSessionTest(unittest.TestCase):
+
+    def setUp(self):
+        api_functions.SESSIONS.clear()
+
+    def test_new_entries_extend_the_history(self):
+        session = api_functions.openSession([SYSTEM])
+
+        self.assertEqual([SYSTEM, Q1, A1], api_functions.syncSession(session, 1, [Q1, A1]))
+        self.assertEqual([SYSTEM, Q1, A1, Q2, A2], api_functions.syncSession(session, 3, [Q2, A2]))
+        self.assertEqual([SYSTEM, Q1, A1, Q2, A2], api_functions.SESSIONS[session])
+
+    def test_entries_past_the_base_are_replaced(self):
+        # A request whose response was lost left Q1/A1 behind; the client resends them from the same base
+        session = api_functions.openSession([SYSTEM])
+        api_functions.syncSession(session, 1, [Q1, A1])
+
+        self.assertEqual([SYSTEM, Q1, A1, Q2, A2], api_functions.syncSession(session, 1, [Q1, A1, Q2, A2]))
+
+    def test_empty_delta_keeps_the_history(self):
+        session = api_functions.openSession([SYSTEM, Q1, A1])
+
+        self.assertEqual([SYSTEM, Q1, A1], api_functions.syncSession(session, 3, []))
+
+    def test_returned_history_is_a_copy(self):
+        session = api_functions.openSession([SYSTEM])
+
+        snapshot = api_functions.syncSession(session, 1, [Q1])
+        snapshot.append(A1)
+
+        self.assertEqual([SYSTEM, Q1], api_functions.SESSIONS[session])
+
+    def test_opened_history_is_a_copy(self):
+        history = [SYSTEM]
+        session = api_functions.openSession(history)
+        history.append(Q1)
+
+        self.assertEqual([SYSTEM], api_functions.SESSIONS[session])
+
+    def test_unknown_session_raises(self):
+        with self.assertRaises(api_functions.UnknownSession):
+            api_functions.syncSession("no-such-session", 0, [Q1])
+
+    def test_base_beyond_the_history_raises(self):
+        # The server has fewer entries than the client thinks, e.g. a different session under the same id
+        session = api_functions.openSession([SYSTEM])
+
+        with self.assertRaises(api_functions.UnknownSession):
+            api_functions.syncSession(session, 3, [Q2])
+        self.assertEqual([SYSTEM], api_functions.SESSIONS[session])
+
+    def test_closed_session_is_unknown(self):
+        session = api_functions.openSession([SYSTEM])
+        api_functions.closeSession(session)
+        api_functions.closeSession(session)
+
+        with self.assertRaises(api_functions.UnknownSession):
+            api_functions.syncSession(session, 1, [])
+
+    def test_least_recently_used_session_is_dropped(self):
+        with mock.patch.object(api_functions, "MAX_SESSIONS", 2):
+            first = api_functions.openSession([SYSTEM])
+            second = api_functions.openSession([SYSTEM])
+            # Using the first makes the second the least recently used
+            api_functions.syncSession(first, 1, [])
+            third = api_functions.openSession([SYSTEM])
+
+        self.assertEqual([first, third], list(api_functions.SESSIONS))
+        with self.assertRaises(api_functions.UnknownSession):
+            api_functions.syncSession(second, 1, [])
+
+    def test_prompt_session_answers_with_the_synced_history(self):
+        session = api_functions.openSession([SYSTEM])
+        with mock.patch.object(api_functions, "promptModel", return_value="answer") as prompt_model:
+            self.assertEqual("answer", api_functions.promptSession(session, "localhost", "llama3", "q2", 1, [Q1, A1]))
+
+        prompt_model.assert_called_once_with("localhost", "llama3", "q2", [SYSTEM, Q1, A1], None)
+
+
+if __name__ == "__main__":
+    unittest.main()